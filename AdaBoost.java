@@ -0,0 +1,210 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Boosted ensemble of weighted DecisionTreeImpl trees (AdaBoost, in its multi-class SAMME form).
+ * Each round grows a tree, by default a stump, on the training rows under their current weights,
+ * then raises the weight of the rows it misclassifies so the next tree concentrates on them. The
+ * rows are reweighted in place through DataSet.setWeight rather than duplicated, and the weights
+ * the training set came with are restored once every tree is grown.
+ *
+ * The ensemble classifies by the vote of its trees, each weighted by its alpha, ln((1 - e) / e) +
+ * ln(K - 1) for a tree of weighted error e over K labels.
+ */
+public class AdaBoost extends DecisionTree {
+  private static final int BLOCK = 4096; // rows voted on together by classifyAll
+  private static final double MIN_ERROR = 1e-10; // error below which a tree is taken as perfect
+
+  private final List<String> labels;
+  private final int[] labelTieOrder;
+  private final List<DecisionTreeImpl> trees = new ArrayList<DecisionTreeImpl>();
+  private final List<CompiledTree> compiled = new ArrayList<CompiledTree>();
+  private final List<Double> alphas = new ArrayList<Double>();
+
+  /**
+   * Boost the given number of decision stumps.
+   *
+   * @param train: the training set, whose weights are used as the initial row weights
+   * @param rounds: maximum number of trees
+   */
+  AdaBoost(DataSet train, int rounds) {
+    this(train, rounds, new TreeOptions().setMaxDepth(1));
+  }
+
+  /**
+   * Boost the given number of trees. Boosting stops early when a tree classifies every row
+   * correctly or does no better than chance.
+   *
+   * @param train: the training set, whose weights are used as the initial row weights
+   * @param rounds: maximum number of trees
+   * @param options: how to grow each tree
+   */
+  AdaBoost(DataSet train, int rounds, TreeOptions options) {
+    if (rounds < 1) {
+      throw new IllegalArgumentException("rounds must be at least 1: " + rounds);
+    }
+    this.labels = train.labels;
+    this.labelTieOrder = DecisionTreeImpl.labelTieOrder(train.labels);
+    int n = train.size();
+    int k = labels.size();
+    float[] original = train.isWeighted() ? Arrays.copyOf(train.getWeights(), n) : null;
+    double[] weights = new double[n];
+    double total = 0;
+    for (int row = 0; row < n; row++) {
+      weights[row] = train.getWeight(row);
+      total += weights[row];
+    }
+    if (total == 0) {
+      throw new IllegalArgumentException("training rows weigh nothing");
+    }
+    int[] predictions = new int[n];
+    try {
+      for (int round = 0; round < rounds; round++) {
+        // keep the weights summing to n, well within float range
+        for (int row = 0; row < n; row++) {
+          weights[row] *= n / total;
+          train.setWeight(row, (float) weights[row]);
+        }
+        DecisionTreeImpl tree = new DecisionTreeImpl(train, options);
+        CompiledTree compiledTree = tree.getCompiledTree();
+        compiledTree.router(train, CompiledTree.valueCounts(train), predictions).classify(0, n, 0);
+
+        double error = 0;
+        for (int row = 0; row < n; row++) {
+          if (predictions[row] != train.getLabelCode(row)) {
+            error += weights[row];
+          }
+        }
+        error /= n;
+        if (error >= 1 - 1.0 / k) {
+          // no better than chance: later trees would only add noise
+          if (trees.isEmpty()) {
+            trees.add(tree);
+            compiled.add(compiledTree);
+            alphas.add(1.0);
+          }
+          break;
+        }
+        double alpha = Math.log((1 - error) / Math.max(error, MIN_ERROR)) + Math.log(k - 1);
+        trees.add(tree);
+        compiled.add(compiledTree);
+        alphas.add(alpha);
+        if (error < MIN_ERROR) {
+          break;
+        }
+
+        total = 0;
+        for (int row = 0; row < n; row++) {
+          if (predictions[row] != train.getLabelCode(row)) {
+            weights[row] *= Math.exp(alpha);
+          }
+          total += weights[row];
+        }
+      }
+    } finally {
+      if (original != null) {
+        for (int row = 0; row < n; row++) {
+          train.setWeight(row, original[row]);
+        }
+      } else {
+        train.clearWeights();
+      }
+    }
+  }
+
+  /**
+   * Number of trees in the ensemble.
+   */
+  public int size() {
+    return trees.size();
+  }
+
+  /**
+   * The tree of the given boosting round.
+   */
+  public DecisionTreeImpl getTree(int round) {
+    return trees.get(round);
+  }
+
+  /**
+   * The weight of the vote of the tree of the given boosting round.
+   */
+  public double getAlpha(int round) {
+    return alphas.get(round);
+  }
+
+  @Override
+  public String classify(Instance instance) {
+    return labels.get(classifyCode(instance));
+  }
+
+  /**
+   * Classify an instance of a DataSet sharing the training meta-values by the weighted vote of
+   * the trees.
+   *
+   * @return the position of the predicted label in labels
+   */
+  int classifyCode(Instance instance) {
+    double[] votes = new double[labels.size()];
+    for (int t = 0; t < compiled.size(); t++) {
+      votes[compiled.get(t).classify(instance.getDataSet(), instance.getRow())] += alphas.get(t);
+    }
+    return DecisionTreeImpl.getMostCommonLabel(votes, labelTieOrder);
+  }
+
+  @Override
+  public int[] classifyAll(DataSet set) {
+    int[] classifications = new int[set.size()];
+    int labelCount = labels.size();
+    int[] treeLabels = new int[BLOCK];
+    double[] blockVotes = new double[BLOCK * labelCount];
+    double[] votes = new double[labelCount];
+    int[] valueCounts = CompiledTree.valueCounts(set);
+    CompiledTree.BatchRouter[] routers = new CompiledTree.BatchRouter[compiled.size()];
+    for (int t = 0; t < routers.length; t++) {
+      routers[t] = compiled.get(t).router(set, valueCounts, treeLabels);
+    }
+    for (int start = 0; start < set.size(); start += BLOCK) {
+      int end = Math.min(set.size(), start + BLOCK);
+      Arrays.fill(blockVotes, 0);
+      for (int t = 0; t < routers.length; t++) {
+        routers[t].classify(start, end, start);
+        double alpha = alphas.get(t);
+        for (int i = 0; i < end - start; i++) {
+          blockVotes[i * labelCount + treeLabels[i]] += alpha;
+        }
+      }
+      for (int i = 0; i < end - start; i++) {
+        System.arraycopy(blockVotes, i * labelCount, votes, 0, labelCount);
+        classifications[start + i] = DecisionTreeImpl.getMostCommonLabel(votes, labelTieOrder);
+      }
+    }
+    return classifications;
+  }
+
+  @Override
+  public void print() {
+    for (int t = 0; t < trees.size(); t++) {
+      System.out.format("TREE %d alpha %.5f\n", t, alphas.get(t));
+      trees.get(t).print();
+    }
+  }
+
+  @Override
+  public void rootInfoGain(DataSet train) {
+    new DecisionTreeImpl().rootInfoGain(train);
+  }
+
+  @Override
+  public void printAccuracy(DataSet test) {
+    int[] classifications = classifyAll(test);
+    int correct = 0;
+    for (int i = 0; i < classifications.length; i++) {
+      if (classifications[i] == test.getLabelCode(i)) {
+        correct++;
+      }
+    }
+    System.out.format("%.5f\n", (double) correct / classifications.length);
+  }
+}
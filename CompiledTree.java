@@ -0,0 +1,396 @@
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Flat form of a trained tree for fast classification. Nodes are numbered in depth-first order with
+ * the root at 0 and described by parallel arrays, so classifying a row is a loop of array loads on
+ * its codes with no allocation and no String compares.
+ *
+ * For node n: splitAttribute[n] is the attribute it splits on, or -1 for a leaf; labelCode[n] is the
+ * label it predicts as a leaf; and the child followed by value code v is
+ * children[childOffset[n] + v]. The share of the training rows reaching node n that take label l is
+ * distribution[n * labelCount + l].
+ *
+ * A node splitting on a numeric attribute has threshold[n] set and two child slots: a row goes to
+ * children[childOffset[n]] when its value is at most the threshold and to the next slot
+ * otherwise. threshold[n] is NaN for every other node.
+ */
+final class CompiledTree {
+  private static final int BLOCK = 4096; // rows routed together by classifyAll
+  private static final int PARALLEL_ROWS = 1 << 16; // rows below which classifyAll stays on one thread
+  private static final int GROUP_ROWS = 32; // rows below which a node walks them one by one
+
+  final int[] splitAttribute;
+  final int[] childOffset;
+  final int[] labelCode;
+  final int[] children;
+  final float[] threshold;
+  final int labelCount;
+  final double[] distribution;
+  private final int depth; // number of internal nodes on the longest path
+
+  CompiledTree(int[] splitAttribute, int[] childOffset, int[] labelCode, int[] children,
+      float[] threshold, int labelCount, double[] distribution) {
+    this.splitAttribute = splitAttribute;
+    this.childOffset = childOffset;
+    this.labelCode = labelCode;
+    this.children = children;
+    this.threshold = threshold;
+    this.labelCount = labelCount;
+    this.distribution = distribution;
+
+    // children are numbered after their parent, so one pass in node order sets every depth
+    int[] nodeDepth = new int[splitAttribute.length];
+    int maxDepth = 0;
+    for (int n = 0; n < splitAttribute.length; n++) {
+      if (splitAttribute[n] < 0) {
+        continue;
+      }
+      maxDepth = Math.max(maxDepth, nodeDepth[n] + 1);
+      int end = nextChildOffset(n);
+      for (int slot = childOffset[n]; slot < end; slot++) {
+        nodeDepth[children[slot]] = nodeDepth[n] + 1;
+      }
+    }
+    this.depth = maxDepth;
+  }
+
+  /**
+   * End of the child slots of internal node n. Internal nodes take their slots in node order.
+   */
+  private int nextChildOffset(int n) {
+    for (int next = n + 1; next < splitAttribute.length; next++) {
+      if (splitAttribute[next] >= 0) {
+        return childOffset[next];
+      }
+    }
+    return children.length;
+  }
+
+  /**
+   * Flatten the part of the tree reachable from root, stopping at terminal nodes. A child shared
+   * by several values is one node whose number fills each of their slots. The label
+   * distribution of each node is taken from its histogram; a node without one, reached by no
+   * training row, has the distribution of its parent, and the root the certainty of its label.
+   *
+   * @param labelCount number of labels
+   */
+  static CompiledTree compile(DecTreeNodeImpl root, int labelCount) {
+    int[] sizes = new int[2];
+    count(root, sizes);
+
+    int[] splitAttribute = new int[sizes[0]];
+    int[] childOffset = new int[sizes[0]];
+    int[] labelCode = new int[sizes[0]];
+    int[] children = new int[sizes[1]];
+    float[] threshold = new float[sizes[0]];
+    double[] distribution = new double[sizes[0] * labelCount];
+    int[] id = {0}; // next node number
+    int[] offset = {0}; // next free child slot
+    fill(root, -1, id, offset, splitAttribute, childOffset, labelCode, children, threshold,
+        distribution, labelCount);
+    return new CompiledTree(splitAttribute, childOffset, labelCode, children, threshold,
+        labelCount, distribution);
+  }
+
+  /**
+   * Add the number of reachable nodes to sizes[0] and of their child slots to sizes[1].
+   */
+  private static void count(DecTreeNodeImpl node, int[] sizes) {
+    sizes[0]++;
+    if (node.terminal) {
+      return;
+    }
+    sizes[1] += node.children.size();
+    for (int v = 0; v < node.children.size(); v++) {
+      if (!node.isRepeat(v)) {
+        count(node.getChild(v), sizes);
+      }
+    }
+  }
+
+  /**
+   * Write the node and its subtree in depth-first order.
+   *
+   * @param parent the number given to the parent, -1 for the root
+   * @return the number given to the node
+   */
+  private static int fill(DecTreeNodeImpl node, int parent, int[] id, int[] offset,
+      int[] splitAttribute, int[] childOffset, int[] labelCode, int[] children, float[] threshold,
+      double[] distribution, int labelCount) {
+    int n = id[0]++;
+    labelCode[n] = node.labelCode;
+    fillDistribution(node, n, parent, distribution, labelCount);
+    if (node.terminal) {
+      splitAttribute[n] = -1;
+      threshold[n] = Float.NaN;
+      return n;
+    }
+    splitAttribute[n] = node.attributeIndex;
+    threshold[n] = node.threshold;
+    childOffset[n] = offset[0];
+    offset[0] += node.children.size();
+    for (int v = 0; v < node.children.size(); v++) {
+      DecTreeNodeImpl child = node.getChild(v);
+      children[childOffset[n] + v] = node.isRepeat(v)
+          ? children[childOffset[n] + child.parentAttributeValueCode]
+          : fill(child, n, id, offset, splitAttribute, childOffset, labelCode, children,
+              threshold, distribution, labelCount);
+    }
+    return n;
+  }
+
+  private static void fillDistribution(DecTreeNodeImpl node, int n, int parent,
+      double[] distribution, int labelCount) {
+    int base = n * labelCount;
+    double total = 0;
+    for (int label = 0; label < labelCount; label++) {
+      double count = node.labelCounts != null ? node.labelCounts[label]
+          : node.labelWeights != null ? node.labelWeights[label] : 0;
+      distribution[base + label] = count;
+      total += count;
+    }
+    if (total > 0) {
+      for (int label = 0; label < labelCount; label++) {
+        distribution[base + label] /= total;
+      }
+    } else if (parent >= 0) {
+      System.arraycopy(distribution, parent * labelCount, distribution, base, labelCount);
+    } else {
+      distribution[base + node.labelCode] = 1;
+    }
+  }
+
+  /**
+   * Number of nodes in the flat tree.
+   */
+  int size() {
+    return splitAttribute.length;
+  }
+
+  /**
+   * Classify a row of a DataSet sharing the training meta-values.
+   *
+   * @return the label code
+   */
+  int classify(DataSet set, int row) {
+    return classify(set, row, 0);
+  }
+
+  /**
+   * Classify a row reaching the given node.
+   *
+   * @return the label code
+   */
+  private int classify(DataSet set, int row, int node) {
+    int attribute;
+    while ((attribute = splitAttribute[node]) >= 0) {
+      node = children[childOffset[node] + branch(set, row, node, attribute)];
+    }
+    return labelCode[node];
+  }
+
+  /**
+   * Child slot of the node, splitting on the attribute, that the row goes to.
+   */
+  private int branch(DataSet set, int row, int node, int attribute) {
+    float t = threshold[node];
+    if (t != t) {
+      return set.getAttributeCode(row, attribute);
+    }
+    return set.getNumericValue(row, attribute) <= t ? 0 : 1;
+  }
+
+  /**
+   * Label distribution of the leaf a row of a DataSet sharing the training meta-values reaches.
+   *
+   * @param out receives the probability of label l at out[l]
+   */
+  void classifyProba(DataSet set, int row, double[] out) {
+    int node = 0;
+    int attribute;
+    while ((attribute = splitAttribute[node]) >= 0) {
+      node = children[childOffset[node] + branch(set, row, node, attribute)];
+    }
+    System.arraycopy(distribution, node * labelCount, out, 0, labelCount);
+  }
+
+  /**
+   * Classify a row given as its attribute codes in attribute order. A numeric attribute is given
+   * as the bits of its value, see Float.floatToIntBits.
+   *
+   * @return the label code
+   */
+  int classify(int[] codes) {
+    int node = 0;
+    int attribute;
+    while ((attribute = splitAttribute[node]) >= 0) {
+      float t = threshold[node];
+      int branch = t != t ? codes[attribute] : Float.intBitsToFloat(codes[attribute]) <= t ? 0 : 1;
+      node = children[childOffset[node] + branch];
+    }
+    return labelCode[node];
+  }
+
+  /**
+   * Classify every row of a DataSet sharing the training meta-values. Rows are routed in blocks:
+   * at each node the block rows reaching it read its attribute column together and are grouped by
+   * child, so the node and column lookups are paid once per node and block instead of once per
+   * row. Once few rows reach a node they finish the walk one by one. Large data sets are split
+   * across the common fork/join pool.
+   *
+   * @param out receives the label code of row i at out[i]
+   */
+  void classifyAll(DataSet set, int[] out) {
+    int[] valueCounts = valueCounts(set);
+    if (set.size() < PARALLEL_ROWS) {
+      new BatchRouter(set, valueCounts, out).classify(0, set.size(), 0);
+    } else {
+      ForkJoinPool.commonPool().invoke(new BatchTask(set, valueCounts, out, 0, set.size()));
+    }
+  }
+
+  /**
+   * Classifies a range of rows by splitting it in halves down to PARALLEL_ROWS.
+   */
+  @SuppressWarnings("serial")
+  private class BatchTask extends RecursiveAction {
+    private final DataSet set;
+    private final int[] valueCounts;
+    private final int[] out;
+    private final int from;
+    private final int to;
+
+    BatchTask(DataSet set, int[] valueCounts, int[] out, int from, int to) {
+      this.set = set;
+      this.valueCounts = valueCounts;
+      this.out = out;
+      this.from = from;
+      this.to = to;
+    }
+
+    @Override
+    protected void compute() {
+      if (to - from <= PARALLEL_ROWS) {
+        new BatchRouter(set, valueCounts, out).classify(from, to, 0);
+      } else {
+        int middle = (from + to) >>> 1;
+        invokeAll(new BatchTask(set, valueCounts, out, from, middle),
+            new BatchTask(set, valueCounts, out, middle, to));
+      }
+    }
+  }
+
+  /**
+   * Number of values of each attribute of the DataSet, 0 for a numeric one.
+   */
+  static int[] valueCounts(DataSet set) {
+    int[] valueCounts = new int[set.attributes.size()];
+    for (int i = 0; i < valueCounts.length; i++) {
+      valueCounts[i] = set.attributeValues.get(set.attributes.get(i)).size();
+    }
+    return valueCounts;
+  }
+
+  /**
+   * Router classifying rows of the DataSet into out with the block routing of classifyAll. It
+   * holds block sized buffers, so a thread classifying many ranges should keep and reuse it.
+   *
+   * @param valueCounts number of values of each attribute, see valueCounts
+   */
+  BatchRouter router(DataSet set, int[] valueCounts, int[] out) {
+    return new BatchRouter(set, valueCounts, out);
+  }
+
+  /**
+   * Per-thread buffers for routing blocks of rows through the tree.
+   */
+  class BatchRouter {
+    private final DataSet set;
+    private final int[] valueCounts;
+    private final int[] out;
+    private int base; // row whose label code goes to out[0]
+    private final int[] rows = new int[BLOCK];
+    private final int[] codes = new int[BLOCK];
+    private final int[] scratch = new int[BLOCK];
+    // per depth: bounds of the child ranges, then the next free position of each child
+    private final int[][] bounds;
+
+    BatchRouter(DataSet set, int[] valueCounts, int[] out) {
+      this.set = set;
+      this.valueCounts = valueCounts;
+      this.out = out;
+      int maxArity = 2; // of a numeric split
+      for (int count : valueCounts) {
+        maxArity = Math.max(maxArity, count);
+      }
+      bounds = new int[depth][2 * maxArity + 1];
+    }
+
+    /**
+     * Classify the rows in [from, to), the label code of row i going to out[i - base].
+     */
+    void classify(int from, int to, int base) {
+      this.base = base;
+      for (int start = from; start < to; start += BLOCK) {
+        int length = Math.min(BLOCK, to - start);
+        for (int i = 0; i < length; i++) {
+          rows[i] = start + i;
+        }
+        route(0, 0, 0, length);
+      }
+    }
+
+    /**
+     * Route the block rows in [from, to) of rows, all of which reach the node.
+     */
+    private void route(int node, int level, int from, int to) {
+      int attribute = splitAttribute[node];
+      if (attribute < 0) {
+        int label = labelCode[node];
+        for (int i = from; i < to; i++) {
+          out[rows[i] - base] = label;
+        }
+        return;
+      }
+      if (to - from < GROUP_ROWS) {
+        // too few rows left for grouping to pay off
+        for (int i = from; i < to; i++) {
+          out[rows[i] - base] = CompiledTree.this.classify(set, rows[i], node);
+        }
+        return;
+      }
+      int arity;
+      float t = threshold[node];
+      if (t != t) {
+        set.gatherAttributeCodes(attribute, rows, from, to, codes);
+        arity = valueCounts[attribute];
+      } else {
+        set.gatherBranches(attribute, t, rows, from, to, codes);
+        arity = 2;
+      }
+      int[] range = bounds[level];
+      Arrays.fill(range, 0, arity + 1, 0);
+      for (int i = from; i < to; i++) {
+        range[codes[i] + 1]++;
+      }
+      range[0] = from;
+      for (int value = 1; value <= arity; value++) {
+        range[value] += range[value - 1];
+      }
+      System.arraycopy(range, 0, range, arity + 1, arity);
+      for (int i = from; i < to; i++) {
+        scratch[range[arity + 1 + codes[i]]++] = rows[i];
+      }
+      System.arraycopy(scratch, from, rows, from, to - from);
+
+      int offset = childOffset[node];
+      for (int value = 0; value < arity; value++) {
+        if (range[value] < range[value + 1]) {
+          route(children[offset + value], level + 1, range[value], range[value + 1]);
+        }
+      }
+    }
+  }
+}
@@ -0,0 +1,390 @@
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+
+/**
+ * k-fold cross-validation and grid search over the settings of DecisionTreeImpl: maximum depth,
+ * minimum rows per leaf, minimum gain and reduced-error pruning.
+ *
+ * Every fold and setting runs on the one DataSet given, whose rows are assigned to folds once;
+ * the trees grow on index arrays of the rows of the other folds, nothing is copied. A fold with
+ * pruning grows on all folds but two, prunes with the next fold and is tested on its own.
+ *
+ * The trees grow with base options (setOptions) whose maximum depth, minimum rows per leaf and
+ * minimum gain are those of the grid, so a criterion or attribute draw of the caller's choice is
+ * cross-validated too.
+ *
+ * The depths and gains of the grid do not multiply the trees grown. A tree grown with a maximum
+ * depth or a minimum gain is the tree grown without them, cut back, so each fold grows one tree
+ * per minimum of rows per leaf and pruning setting, and the depths and gains are tried on copies
+ * cut back from it (DecisionTreeImpl.truncated). That does not hold under a node budget
+ * (TreeOptions.setMaxNodes), which the tree spends differently once cut back, so with one every
+ * setting grows its own tree. The trees are grown in parallel, each on one thread.
+ */
+public class CrossValidator {
+  private final DataSet data;
+  private final int folds;
+  private long seed = 1; // seed of the assignment of rows to folds
+  private int parallelism = Runtime.getRuntime().availableProcessors();
+  private TreeOptions options = new TreeOptions(); // how to grow the trees, the grid aside
+  private int[] maxDepths = {0};
+  private int[] minRowsPerLeaf = {1};
+  private double[] minGains = {0};
+  private boolean[] prune = {false};
+
+  /**
+   * Settings of a tree and their accuracy on each fold.
+   */
+  public static class Result {
+    private final TreeOptions base;
+    private final int maxDepth;
+    private final int minRowsPerLeaf;
+    private final double minGain;
+    private final boolean prune;
+    private final double[] foldAccuracy;
+
+    Result(TreeOptions base, int maxDepth, int minRowsPerLeaf, double minGain, boolean prune,
+        int folds) {
+      this.base = base;
+      this.maxDepth = maxDepth;
+      this.minRowsPerLeaf = minRowsPerLeaf;
+      this.minGain = minGain;
+      this.prune = prune;
+      this.foldAccuracy = new double[folds];
+    }
+
+    public int getMaxDepth() {
+      return maxDepth;
+    }
+
+    public int getMinRowsPerLeaf() {
+      return minRowsPerLeaf;
+    }
+
+    public double getMinGain() {
+      return minGain;
+    }
+
+    public boolean isPruned() {
+      return prune;
+    }
+
+    /**
+     * Options growing a tree with these settings, the others being those of the base options;
+     * pruning is up to the caller.
+     */
+    public TreeOptions getOptions() {
+      return base.copy().setMaxDepth(maxDepth).setMinRowsPerLeaf(minRowsPerLeaf)
+          .setMinGain(minGain);
+    }
+
+    /**
+     * Accuracy on the test rows of each fold.
+     */
+    public double[] getFoldAccuracies() {
+      return foldAccuracy.clone();
+    }
+
+    public double getMeanAccuracy() {
+      double sum = 0;
+      for (double accuracy : foldAccuracy) {
+        sum += accuracy;
+      }
+      return sum / foldAccuracy.length;
+    }
+
+    /**
+     * Standard deviation of the fold accuracies.
+     */
+    public double getStandardDeviation() {
+      double mean = getMeanAccuracy();
+      double sum = 0;
+      for (double accuracy : foldAccuracy) {
+        sum += (accuracy - mean) * (accuracy - mean);
+      }
+      return Math.sqrt(sum / foldAccuracy.length);
+    }
+
+    @Override
+    public String toString() {
+      return String.format("maxDepth %d minRowsPerLeaf %d minGain %.5f prune %b: %.5f +- %.5f",
+          maxDepth, minRowsPerLeaf, minGain, prune, getMeanAccuracy(), getStandardDeviation());
+    }
+  }
+
+  /**
+   * Cross-validate over the given number of folds of the data.
+   *
+   * @param data: the labeled rows
+   * @param folds: number of folds, at least 2
+   */
+  public CrossValidator(DataSet data, int folds) {
+    if (folds < 2 || folds > data.size()) {
+      throw new IllegalArgumentException("folds must be between 2 and the rows: " + folds);
+    }
+    this.data = data;
+    this.folds = folds;
+  }
+
+  /**
+   * Seed of the random assignment of rows to folds.
+   */
+  public CrossValidator setSeed(long seed) {
+    this.seed = seed;
+    return this;
+  }
+
+  /**
+   * Number of trees grown at once, the number of processors by default.
+   */
+  public CrossValidator setParallelism(int parallelism) {
+    if (parallelism < 1) {
+      throw new IllegalArgumentException("parallelism must be at least 1: " + parallelism);
+    }
+    this.parallelism = parallelism;
+    return this;
+  }
+
+  /**
+   * Options the trees grow with, their maximum depth, minimum rows per leaf and minimum gain
+   * being replaced by those of the grid and their parallelism by 1. Default options by default.
+   */
+  public CrossValidator setOptions(TreeOptions options) {
+    this.options = options.copy();
+    return this;
+  }
+
+  /**
+   * Maximum depths to try, 0 for no limit. Only 0 by default.
+   */
+  public CrossValidator setMaxDepths(int... maxDepths) {
+    for (int maxDepth : maxDepths) {
+      if (maxDepth < 0) {
+        throw new IllegalArgumentException("maxDepth must be at least 0: " + maxDepth);
+      }
+    }
+    this.maxDepths = nonEmpty(maxDepths.clone(), maxDepths.length);
+    return this;
+  }
+
+  /**
+   * Minimum rows per leaf to try. Only 1 by default.
+   */
+  public CrossValidator setMinRowsPerLeaf(int... minRowsPerLeaf) {
+    for (int minRows : minRowsPerLeaf) {
+      if (minRows < 1) {
+        throw new IllegalArgumentException("minRowsPerLeaf must be at least 1: " + minRows);
+      }
+    }
+    this.minRowsPerLeaf = nonEmpty(minRowsPerLeaf.clone(), minRowsPerLeaf.length);
+    return this;
+  }
+
+  /**
+   * Minimum gains to try. Only 0 by default.
+   */
+  public CrossValidator setMinGains(double... minGains) {
+    for (double minGain : minGains) {
+      if (!(minGain >= 0)) {
+        throw new IllegalArgumentException("minGain must be at least 0: " + minGain);
+      }
+    }
+    this.minGains = nonEmpty(minGains.clone(), minGains.length);
+    return this;
+  }
+
+  /**
+   * Pruning settings to try. Only no pruning by default.
+   */
+  public CrossValidator setPrune(boolean... prune) {
+    this.prune = nonEmpty(prune.clone(), prune.length);
+    return this;
+  }
+
+  private static <T> T nonEmpty(T values, int length) {
+    if (length == 0) {
+      throw new IllegalArgumentException("no value to try");
+    }
+    return values;
+  }
+
+  /**
+   * Cross-validate every combination of the settings to try.
+   *
+   * @return the results, best mean accuracy first and ties in grid order
+   */
+  public List<Result> search() {
+    boolean anyPrune = false;
+    for (boolean p : prune) {
+      anyPrune |= p;
+    }
+    if (anyPrune && folds < 3) {
+      throw new IllegalArgumentException("pruning needs at least 3 folds: " + folds);
+    }
+    int[] foldOf = assignFolds();
+
+    // results[minRows][prune][maxDepth][minGain]
+    Result[][][][] results = new Result[minRowsPerLeaf.length][prune.length][maxDepths.length]
+        [minGains.length];
+    List<Result> grid = new ArrayList<Result>();
+    for (int r = 0; r < minRowsPerLeaf.length; r++) {
+      for (int p = 0; p < prune.length; p++) {
+        for (int d = 0; d < maxDepths.length; d++) {
+          for (int g = 0; g < minGains.length; g++) {
+            results[r][p][d][g] = new Result(options, maxDepths[d], minRowsPerLeaf[r],
+                minGains[g], prune[p], folds);
+            grid.add(results[r][p][d][g]);
+          }
+        }
+      }
+    }
+
+    List<ForkJoinTask<?>> tasks = new ArrayList<ForkJoinTask<?>>();
+    for (int fold = 0; fold < folds; fold++) {
+      for (int r = 0; r < minRowsPerLeaf.length; r++) {
+        for (int p = 0; p < prune.length; p++) {
+          int f = fold;
+          Result[][] cell = results[r][p];
+          TreeOptions grown = options.copy().setParallelism(1).setMaxDepth(0).setMinGain(0)
+              .setMinRowsPerLeaf(minRowsPerLeaf[r]);
+          boolean pruned = prune[p];
+          tasks.add(ForkJoinTask.adapt(() -> validate(foldOf, f, grown, pruned, cell)));
+        }
+      }
+    }
+    if (parallelism > 1 && tasks.size() > 1) {
+      ForkJoinPool pool = new ForkJoinPool(Math.min(parallelism, tasks.size()));
+      try {
+        pool.invoke(ForkJoinTask.adapt(() -> ForkJoinTask.invokeAll(tasks)));
+      } finally {
+        pool.shutdown();
+      }
+    } else {
+      for (ForkJoinTask<?> task : tasks) {
+        task.invoke();
+      }
+    }
+
+    List<Result> sorted = new ArrayList<Result>(grid);
+    // stable, so equal accuracies keep their grid order
+    Collections.sort(sorted, Comparator.comparingDouble(Result::getMeanAccuracy).reversed());
+    return sorted;
+  }
+
+  /**
+   * Cross-validate one setting.
+   *
+   * @param options: how to grow the trees, in place of the base options
+   * @param prune: whether to prune the trees
+   */
+  public Result evaluate(TreeOptions options, boolean prune) {
+    List<Result> results = new CrossValidator(data, folds).setSeed(seed)
+        .setParallelism(parallelism).setOptions(options).setMaxDepths(options.getMaxDepth())
+        .setMinRowsPerLeaf(options.getMinRowsPerLeaf()).setMinGains(options.getMinGain())
+        .setPrune(prune).search();
+    return results.get(0);
+  }
+
+  /**
+   * The fold of each row, the folds being the consecutive slices of a random permutation of the
+   * rows.
+   */
+  private int[] assignFolds() {
+    int n = data.size();
+    int[] permutation = new int[n];
+    for (int i = 0; i < n; i++) {
+      permutation[i] = i;
+    }
+    SplittableRandom random = new SplittableRandom(seed);
+    for (int i = n - 1; i > 0; i--) {
+      int j = random.nextInt(i + 1);
+      int swap = permutation[i];
+      permutation[i] = permutation[j];
+      permutation[j] = swap;
+    }
+    int[] foldOf = new int[n];
+    for (int i = 0; i < n; i++) {
+      foldOf[permutation[i]] = (int) ((long) i * folds / n);
+    }
+    return foldOf;
+  }
+
+  /**
+   * The rows, in increasing order, whose fold is or is not one of the given ones.
+   */
+  private static int[] rows(int[] foldOf, boolean in, int... folds) {
+    int count = 0;
+    int[] rows = new int[foldOf.length];
+    for (int row = 0; row < foldOf.length; row++) {
+      boolean member = false;
+      for (int fold : folds) {
+        member |= foldOf[row] == fold;
+      }
+      if (member == in) {
+        rows[count++] = row;
+      }
+    }
+    return Arrays.copyOf(rows, count);
+  }
+
+  /**
+   * Grow the tree of one fold and fill in the accuracy of every depth and gain on it.
+   *
+   * @param options how to grow the tree, without maximum depth or minimum gain
+   * @param cell results[maxDepth][minGain] of the setting
+   */
+  private void validate(int[] foldOf, int fold, TreeOptions options, boolean prune,
+      Result[][] cell) {
+    int tuneFold = (fold + 1) % folds;
+    int[] test = rows(foldOf, true, fold);
+    int[] train = prune ? rows(foldOf, false, fold, tuneFold) : rows(foldOf, false, fold);
+    int[] tune = prune ? rows(foldOf, true, tuneFold) : null;
+    // under a node budget every setting grows its own tree, see the class comment
+    boolean cutBack = options.getMaxNodes() == 0;
+    DecisionTreeImpl tree = cutBack ? new DecisionTreeImpl(data, train, options) : null;
+    for (int d = 0; d < maxDepths.length; d++) {
+      for (int g = 0; g < minGains.length; g++) {
+        DecisionTreeImpl cut = cutBack ? tree.truncated(maxDepths[d], minGains[g])
+            : new DecisionTreeImpl(data, train,
+                options.copy().setMaxDepth(maxDepths[d]).setMinGain(minGains[g]));
+        if (prune) {
+          cut.prune(data, tune);
+        }
+        cell[d][g].foldAccuracy[fold] = accuracy(cut.getCompiledTree(), test);
+      }
+    }
+  }
+
+  private double accuracy(CompiledTree tree, int[] rows) {
+    int correct = 0;
+    for (int row : rows) {
+      if (tree.classify(data, row) == data.getLabelCode(row)) {
+        correct++;
+      }
+    }
+    return (double) correct / rows.length;
+  }
+
+  /**
+   * Grid search on a data file, printing every setting from best to worst.
+   */
+  public static void main(String[] args) throws IOException {
+    if (args.length < 1 || args.length > 2) {
+      System.err.println("usage: java CrossValidator <data> [folds]");
+      System.exit(-1);
+    }
+    DataSet data = new DataSetLoader().load(args[0]);
+    int folds = args.length > 1 ? Integer.parseInt(args[1]) : 5;
+    List<Result> results = new CrossValidator(data, folds).setMaxDepths(0, 2, 4, 8)
+        .setMinRowsPerLeaf(1, 5, 20).setMinGains(0, 0.01, 0.05).setPrune(false, true).search();
+    for (Result result : results) {
+      System.out.println(result);
+    }
+  }
+}
@@ -1,29 +1,55 @@
+import java.util.AbstractList;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.RandomAccess;
 
 /**
  * This class organizes the information of a data set into simple structures. To speed up program
- * performance, the label value of an instance is stored as an Integer that reflect the position of
- * the label in the DataSet labels list. Similarly, the attribute values of an instance are stored
- * as Integers that reflect the position of that value in the list attributes[<attribute>]. See the
- * Instance class for more details. All ordering of attribute values in an instance follow the
- * ordering of the DataSet attributes list.
+ * performance, the label value of an instance is stored as an integer code that reflects the
+ * position of the label in the DataSet labels list. Similarly, the attribute values of an instance
+ * are stored as integer codes that reflect the position of that value in the list
+ * attributeValues[<attribute>]. See the Instance class for more details. All ordering of attribute
+ * values in an instance follow the ordering of the DataSet attributes list.
  *
- * Do not modify.
+ * Codes are kept column-wise: one primitive column per attribute plus one for the label. A column
+ * is a byte[] when every code of its dictionary fits in a byte and a short[] otherwise, so a row
+ * costs one or two bytes per attribute instead of a list of String references. Rows may also carry
+ * a float weight, kept in a column of its own that only exists once some weight is not 1.
+ *
+ * An attribute declared as "##,name,numeric" is numeric: it has no list of values (its
+ * attributeValues entry is empty) and its column is a float[] holding the values themselves.
  */
 public class DataSet {
   public List<String> labels = null; // ordered list of class labels
   public List<String> attributes = null; // ordered list of attributes
   public Map<String, List<String>> attributeValues = null; // map to ordered discrete values taken
-                                                           // by attributes
-  public List<Instance> instances = null; // ordered list of instances
+                                                           // by attributes, empty when numeric
+  public List<Instance> instances = null; // ordered list of instances, views over the columns
   private final String DELIMITER = ","; // Used to split input strings
+  private static final int INITIAL_CAPACITY = 16;
+  private static final String NUMERIC = "numeric"; // sole value declaring a numeric attribute
+
+  // value -> code lookup per attribute, and label -> code, built lazily from the meta-data
+  private List<Map<String, Integer>> valueCodes = null;
+  private Map<String, Integer> labelCodes = null;
+
+  // column i < attributes.size() holds attribute i, the last column holds the label codes;
+  // exactly one of byteColumns[i], shortColumns[i] and floatColumns[i] is non-null, the last one
+  // for numeric attributes
+  private byte[][] byteColumns = null;
+  private short[][] shortColumns = null;
+  private float[][] floatColumns = null;
+  private int capacity = 0; // length of every column
+  private int size = 0;
+  // weight of each row, null while every row weighs 1
+  private float[] weights = null;
 
   /**
    * Adds the labels used by the instances.
-   * 
+   *
    * @param line begins with substring "%%"
    */
   public void addLabels(String line) {
@@ -43,8 +69,9 @@ public class DataSet {
 
   /**
    * Adds the attributes used by the instances.
-   * 
-   * @param line begins with substring "##"
+   *
+   * @param line begins with substring "##", followed by the name and either the discrete values
+   *        or the single word numeric, which is why numeric cannot be the only discrete value
    */
   public void addAttribute(String line) {
     if (attributes == null) {
@@ -64,46 +91,391 @@ public class DataSet {
     attributes.add(splitline[1]);
     attributeValues.put(splitline[1], list);
 
-    // ordered list of values for specific attribute
+    // ordered list of values for specific attribute, none for a numeric one
+    if (splitline.length == 3 && splitline[2].equals(NUMERIC)) {
+      return;
+    }
     for (int i = 2; i < splitline.length; i++) {
       list.add(splitline[i]);
     }
   }
 
+  /**
+   * True when the given attribute is numeric, i.e. takes float values instead of codes.
+   */
+  public boolean isNumeric(int attribute) {
+    return attributeValues.get(attributes.get(attribute)).isEmpty();
+  }
+
+  /**
+   * True when some attribute is numeric.
+   */
+  public boolean hasNumericAttributes() {
+    for (int i = 0; i < attributes.size(); i++) {
+      if (isNumeric(i)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
   /**
    * Add instance to collection.
-   * 
+   *
    * @param line begins with label
    */
   public void addInstance(String line) {
-    if (instances == null) {
-      instances = new ArrayList<Instance>();
-    }
-
     String[] splitline = line.split(DELIMITER);
-    if (splitline.length < 1 + attributes.size()) { // TODO don't call .size()?
+    int attributeCount = attributes.size();
+    if (splitline.length < 1 + attributeCount) {
       System.err.println("Instance doesn't contain enough attributes");
       return;
     }
+    ensureColumns();
 
-    Instance instance = new Instance();
-    instance.label = splitline[attributes.size()];
-    
-    // add the values, will be input in same order as attributes
-    for (int i = 0; i < splitline.length - 1; i++) {
-      List<String> values = attributeValues.get(attributes.get(i));
-      // find the index of the value
-      for (int j = 0; j < values.size(); j++) {
-        if (splitline[i].equals(values.get(j))) {
-          instance.addAttribute(values.get(j));
-          break;
+    // resolve every code before touching the columns so a bad line leaves no partial row
+    int[] codes = new int[attributeCount + 1];
+    float[] values = null;
+    for (int i = 0; i < attributeCount; i++) {
+      if (floatColumns[i] != null) {
+        if (values == null) {
+          values = new float[attributeCount];
         }
-        if (j == values.size() - 1) {
+        try {
+          values[i] = Float.parseFloat(splitline[i]);
+        } catch (NumberFormatException e) {
           System.err.println("Missing attribute : check input files");
+          return;
         }
+        continue;
+      }
+      codes[i] = getAttributeValueCode(i, splitline[i]);
+      if (codes[i] < 0) {
+        System.err.println("Missing attribute : check input files");
+        return;
       }
     }
-    instances.add(instance);
+    codes[attributeCount] = getLabelCode(splitline[attributeCount]);
+    if (codes[attributeCount] < 0) {
+      System.err.println("Missing label : check input files");
+      return;
+    }
+    addRow(codes, values);
+  }
+
+  /**
+   * Appends one row given its attribute codes followed by its label code. Numeric attributes
+   * cannot be given as codes, see addRow.
+   */
+  void addCodes(int[] codes) {
+    addRow(codes, null);
+  }
+
+  /**
+   * Appends one row given its attribute codes followed by its label code, and the values of its
+   * numeric attributes at their positions in values. The codes at those positions are ignored,
+   * as are the values at the others; values may be null without numeric attributes.
+   */
+  void addRow(int[] codes, float[] values) {
+    ensureColumns();
+    ensureCapacity(size + 1);
+    for (int i = 0; i < codes.length; i++) {
+      if (byteColumns[i] != null) {
+        byteColumns[i][size] = (byte) codes[i];
+      } else if (shortColumns[i] != null) {
+        shortColumns[i][size] = (short) codes[i];
+      } else {
+        floatColumns[i][size] = values[i];
+      }
+    }
+    if (weights != null) {
+      weights[size] = 1;
+    }
+    size++;
+  }
+
+  /**
+   * New empty DataSet sharing the labels, attributes and attribute values of this one.
+   */
+  DataSet emptyCopy() {
+    DataSet copy = new DataSet();
+    copy.labels = labels;
+    copy.attributes = attributes;
+    copy.attributeValues = attributeValues;
+    return copy;
+  }
+
+  /**
+   * Appends the rows of the given DataSets, in order. They must share the meta-data of this one,
+   * see emptyCopy.
+   */
+  void appendAll(List<DataSet> others) {
+    int total = size;
+    for (DataSet other : others) {
+      total += other.size;
+    }
+    ensureColumns();
+    ensureCapacity(total);
+    for (DataSet other : others) {
+      if (other.weights != null && weights == null) {
+        allocateWeights();
+      }
+    }
+    for (DataSet other : others) {
+      if (other.size == 0) {
+        continue;
+      }
+      if (weights != null) {
+        if (other.weights != null) {
+          System.arraycopy(other.weights, 0, weights, size, other.size);
+        } else {
+          Arrays.fill(weights, size, size + other.size, 1);
+        }
+      }
+      for (int i = 0; i < byteColumns.length; i++) {
+        if (byteColumns[i] != null) {
+          System.arraycopy(other.byteColumns[i], 0, byteColumns[i], size, other.size);
+        } else if (shortColumns[i] != null) {
+          System.arraycopy(other.shortColumns[i], 0, shortColumns[i], size, other.size);
+        } else {
+          System.arraycopy(other.floatColumns[i], 0, floatColumns[i], size, other.size);
+        }
+      }
+      size += other.size;
+    }
+  }
+
+  /**
+   * Number of instances in the data set.
+   */
+  public int size() {
+    return size;
+  }
+
+  /**
+   * Weight of the given row in training and pruning, 1 unless set otherwise.
+   */
+  public float getWeight(int row) {
+    return weights == null ? 1 : weights[row];
+  }
+
+  /**
+   * Sets the weight of the given row. A row of weight w counts as w rows of weight 1 in the
+   * entropy, majority label and pruning accuracy computations of DecisionTreeImpl.
+   */
+  public void setWeight(int row, float weight) {
+    if (row < 0 || row >= size) {
+      throw new IndexOutOfBoundsException("Index: " + row + ", Size: " + size);
+    }
+    if (!(weight >= 0 && weight < Float.POSITIVE_INFINITY)) {
+      throw new IllegalArgumentException("weight must be finite and at least 0: " + weight);
+    }
+    if (weights == null) {
+      if (weight == 1) {
+        return;
+      }
+      allocateWeights();
+    }
+    weights[row] = weight;
+  }
+
+  /**
+   * True when some row may weigh other than 1.
+   */
+  public boolean isWeighted() {
+    return weights != null;
+  }
+
+  /**
+   * Sets the weight of every row back to 1.
+   */
+  public void clearWeights() {
+    weights = null;
+  }
+
+  /**
+   * The weight column, weights[row] for row < size(), or null when every row weighs 1.
+   */
+  float[] getWeights() {
+    return weights;
+  }
+
+  private void allocateWeights() {
+    ensureColumns();
+    weights = new float[capacity];
+    Arrays.fill(weights, 1);
+  }
+
+  /**
+   * Code of the value taken by the given discrete attribute in the given row.
+   */
+  public int getAttributeCode(int row, int attribute) {
+    byte[] bytes = byteColumns[attribute];
+    return bytes != null ? bytes[row] : shortColumns[attribute][row] & 0xFFFF;
+  }
+
+  /**
+   * Copies the codes of one attribute for rows[i], from <= i < to, into codes[i].
+   */
+  void gatherAttributeCodes(int attribute, int[] rows, int from, int to, int[] codes) {
+    byte[] bytes = byteColumns[attribute];
+    if (bytes != null) {
+      for (int i = from; i < to; i++) {
+        codes[i] = bytes[rows[i]];
+      }
+    } else {
+      short[] shorts = shortColumns[attribute];
+      for (int i = from; i < to; i++) {
+        codes[i] = shorts[rows[i]] & 0xFFFF;
+      }
+    }
+  }
+
+  /**
+   * Value taken by the given numeric attribute in the given row.
+   */
+  public float getNumericValue(int row, int attribute) {
+    return floatColumns[attribute][row];
+  }
+
+  /**
+   * The column of a numeric attribute, column[row] for row < size().
+   */
+  float[] getNumericColumn(int attribute) {
+    return floatColumns[attribute];
+  }
+
+  /**
+   * For rows[i], from <= i < to, sets codes[i] to 0 when its value of the numeric attribute is at
+   * most the threshold and to 1 otherwise.
+   */
+  void gatherBranches(int attribute, float threshold, int[] rows, int from, int to, int[] codes) {
+    float[] column = floatColumns[attribute];
+    for (int i = from; i < to; i++) {
+      codes[i] = column[rows[i]] <= threshold ? 0 : 1;
+    }
+  }
+
+  /**
+   * Code of the label of the given row, i.e. its position in labels.
+   */
+  public int getLabelCode(int row) {
+    return getAttributeCode(row, attributes.size());
+  }
+
+  /**
+   * Returns the row view of the given instance.
+   */
+  public Instance getInstance(int row) {
+    return new Instance(this, row);
+  }
+
+  /**
+   * Position of the value in attributeValues for the given attribute, or -1 when unknown.
+   */
+  public int getAttributeValueCode(int attribute, String value) {
+    ensureCodeMaps();
+    Integer code = valueCodes.get(attribute).get(value);
+    return code == null ? -1 : code.intValue();
+  }
+
+  /**
+   * Position of the label in labels, or -1 when unknown.
+   */
+  public int getLabelCode(String label) {
+    ensureCodeMaps();
+    Integer code = labelCodes.get(label);
+    return code == null ? -1 : code.intValue();
+  }
+
+  /**
+   * Builds the dictionaries used to turn values into codes. The meta-data lines always precede the
+   * instances, so the dictionaries are fixed once the first code is requested.
+   */
+  private void ensureCodeMaps() {
+    if (valueCodes != null) {
+      return;
+    }
+    valueCodes = new ArrayList<Map<String, Integer>>(attributes.size());
+    for (String attribute : attributes) {
+      valueCodes.add(codeMap(attributeValues.get(attribute)));
+    }
+    labelCodes = codeMap(labels);
+  }
+
+  private static Map<String, Integer> codeMap(List<String> values) {
+    Map<String, Integer> codes = new HashMap<String, Integer>(values.size() * 2);
+    for (int i = 0; i < values.size(); i++) {
+      codes.putIfAbsent(values.get(i), i);
+    }
+    return codes;
+  }
+
+  /**
+   * Allocates one column per attribute plus the label column, picking the narrowest type that
+   * holds every code of the column, or a float column for a numeric attribute.
+   */
+  private void ensureColumns() {
+    if (byteColumns != null) {
+      return;
+    }
+    int columns = attributes.size() + 1;
+    byteColumns = new byte[columns][];
+    shortColumns = new short[columns][];
+    floatColumns = new float[columns][];
+    capacity = INITIAL_CAPACITY;
+    for (int i = 0; i < columns; i++) {
+      int arity = i < attributes.size() ? attributeValues.get(attributes.get(i)).size()
+          : labels.size();
+      if (i < attributes.size() && arity == 0) {
+        floatColumns[i] = new float[INITIAL_CAPACITY];
+      } else if (arity <= Byte.MAX_VALUE + 1) {
+        byteColumns[i] = new byte[INITIAL_CAPACITY];
+      } else if (arity <= 0xFFFF + 1) {
+        shortColumns[i] = new short[INITIAL_CAPACITY];
+      } else {
+        throw new IllegalStateException("Too many values for a column: " + arity);
+      }
+    }
+    instances = new RowList();
+  }
+
+  private void ensureCapacity(int required) {
+    if (required <= capacity) {
+      return;
+    }
+    int grown = Math.max(required, capacity + (capacity >> 1));
+    for (int i = 0; i < byteColumns.length; i++) {
+      if (byteColumns[i] != null) {
+        byteColumns[i] = Arrays.copyOf(byteColumns[i], grown);
+      } else if (shortColumns[i] != null) {
+        shortColumns[i] = Arrays.copyOf(shortColumns[i], grown);
+      } else {
+        floatColumns[i] = Arrays.copyOf(floatColumns[i], grown);
+      }
+    }
+    capacity = grown;
+    if (weights != null) {
+      weights = Arrays.copyOf(weights, grown);
+    }
+  }
+
+  /**
+   * Read-only list of row views, created on access.
+   */
+  private class RowList extends AbstractList<Instance> implements RandomAccess {
+    @Override
+    public Instance get(int index) {
+      if (index < 0 || index >= size) {
+        throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+      }
+      return new Instance(DataSet.this, index);
+    }
+
+    @Override
+    public int size() {
+      return size;
+    }
   }
 
   /**
@@ -142,6 +514,9 @@ public class DataSet {
         }
         List<String> otherValues = other.attributeValues.get(other.attributes.get(i));
         List<String> thisValues = this.attributeValues.get(other.attributes.get(i));
+        if (otherValues.isEmpty() != thisValues.isEmpty()) {
+          return false; // numeric in one only
+        }
         for (int j = 0; j < otherValues.size(); j++) {
           if (!otherValues.get(j).equals(thisValues.get(j))) {
             return false;
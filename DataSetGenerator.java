@@ -0,0 +1,344 @@
+import java.io.BufferedOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+
+/**
+ * Generates synthetic data sets in the format read by HW3.createDataSet. Attribute values are drawn
+ * uniformly and the label of a row is given by a random planted tree over the attributes, then
+ * replaced by a uniformly drawn label with the configured noise rate. The same settings and seed
+ * always produce the same file.
+ *
+ * Rows are streamed straight to the output, so the size of a file is only bounded by the disk:
+ *
+ * <pre>
+ * java DataSetGenerator big.txt -rows 100000000 -attributes 200 -arity 2-8 -labels 3 -depth 6
+ * </pre>
+ */
+public class DataSetGenerator {
+  private static final int BUFFER_BYTES = 1 << 20;
+
+  private int rows = 1000;
+  private int attributes = 8;
+  private int minArity = 2;
+  private int maxArity = 5;
+  private int labels = 2;
+  private int depth = 3;
+  private double noise = 0.1;
+  private long seed = 1;
+
+  // planted tree, laid out as in CompiledTree
+  private int[] splitAttribute;
+  private int[] childOffset;
+  private int[] labelCode;
+  private int[] children;
+
+  /**
+   * Number of instances to generate, 1000 by default.
+   */
+  public DataSetGenerator setRows(int rows) {
+    if (rows < 0) {
+      throw new IllegalArgumentException("rows must be at least 0: " + rows);
+    }
+    this.rows = rows;
+    return this;
+  }
+
+  /**
+   * Number of attributes, 8 by default.
+   */
+  public DataSetGenerator setAttributes(int attributes) {
+    if (attributes < 1) {
+      throw new IllegalArgumentException("attributes must be at least 1: " + attributes);
+    }
+    this.attributes = attributes;
+    return this;
+  }
+
+  /**
+   * Range of the number of values of an attribute, 2 to 5 by default. Attribute i takes
+   * minArity + i % (maxArity - minArity + 1) values.
+   */
+  public DataSetGenerator setArity(int minArity, int maxArity) {
+    if (minArity < 1 || maxArity < minArity || maxArity > 0xFFFF + 1) {
+      throw new IllegalArgumentException("bad arity range: " + minArity + "-" + maxArity);
+    }
+    this.minArity = minArity;
+    this.maxArity = maxArity;
+    return this;
+  }
+
+  /**
+   * Number of class labels, 2 by default.
+   */
+  public DataSetGenerator setLabels(int labels) {
+    if (labels < 1 || labels > 0xFFFF + 1) {
+      throw new IllegalArgumentException("bad label count: " + labels);
+    }
+    this.labels = labels;
+    return this;
+  }
+
+  /**
+   * Depth of the planted tree, 3 by default; 0 labels every row at random. The depth is capped by
+   * the number of attributes since a path never splits twice on the same attribute.
+   */
+  public DataSetGenerator setDepth(int depth) {
+    if (depth < 0) {
+      throw new IllegalArgumentException("depth must be at least 0: " + depth);
+    }
+    this.depth = depth;
+    return this;
+  }
+
+  /**
+   * Fraction of rows whose label is drawn at random instead of given by the planted tree, 0.1 by
+   * default.
+   */
+  public DataSetGenerator setNoise(double noise) {
+    if (!(noise >= 0 && noise <= 1)) {
+      throw new IllegalArgumentException("noise must be between 0 and 1: " + noise);
+    }
+    this.noise = noise;
+    return this;
+  }
+
+  /**
+   * Seed of the random generator, 1 by default.
+   */
+  public DataSetGenerator setSeed(long seed) {
+    this.seed = seed;
+    return this;
+  }
+
+  private int arity(int attribute) {
+    return minArity + attribute % (maxArity - minArity + 1);
+  }
+
+  private static String attributeName(int attribute) {
+    return "A" + attribute;
+  }
+
+  private static String valueName(int value) {
+    return "v" + value;
+  }
+
+  private static String labelName(int label) {
+    return "L" + label;
+  }
+
+  /**
+   * Stream the data set to the file, replacing it.
+   */
+  public void write(String file) throws IOException {
+    try (OutputStream out = new FileOutputStream(file)) {
+      write(out);
+    }
+  }
+
+  /**
+   * Stream the data set to out, which is left open.
+   */
+  public void write(OutputStream out) throws IOException {
+    SplittableRandom random = new SplittableRandom(seed);
+    plantTree(random);
+
+    BufferedOutputStream buffered = new BufferedOutputStream(out, BUFFER_BYTES);
+    buffered.write(header().getBytes(StandardCharsets.UTF_8));
+
+    // every row is written from these, so no String is built per row
+    byte[][][] valueBytes = new byte[attributes][][];
+    for (int i = 0; i < attributes; i++) {
+      valueBytes[i] = new byte[arity(i)][];
+      for (int value = 0; value < valueBytes[i].length; value++) {
+        valueBytes[i][value] = (valueName(value) + ",").getBytes(StandardCharsets.UTF_8);
+      }
+    }
+    byte[][] labelBytes = new byte[labels][];
+    for (int label = 0; label < labels; label++) {
+      labelBytes[label] = (labelName(label) + "\n").getBytes(StandardCharsets.UTF_8);
+    }
+
+    int[] codes = new int[attributes + 1];
+    for (int row = 0; row < rows; row++) {
+      nextRow(random, codes);
+      for (int i = 0; i < attributes; i++) {
+        byte[] bytes = valueBytes[i][codes[i]];
+        buffered.write(bytes, 0, bytes.length);
+      }
+      byte[] bytes = labelBytes[codes[attributes]];
+      buffered.write(bytes, 0, bytes.length);
+    }
+    buffered.flush();
+  }
+
+  /**
+   * Generate the data set in memory, with the rows the file written by write would hold.
+   */
+  public DataSet generate() {
+    SplittableRandom random = new SplittableRandom(seed);
+    plantTree(random);
+
+    DataSet set = new DataSet();
+    for (String line : header().split("\n")) {
+      if (line.startsWith("%%")) {
+        set.addLabels(line);
+      } else if (line.startsWith("##")) {
+        set.addAttribute(line);
+      }
+    }
+    int[] codes = new int[attributes + 1];
+    for (int row = 0; row < rows; row++) {
+      nextRow(random, codes);
+      set.addCodes(codes);
+    }
+    return set;
+  }
+
+  /**
+   * Comment recording the settings, then the label and attribute lines.
+   */
+  private String header() {
+    StringBuilder header = new StringBuilder();
+    header.append(String.format("// DataSetGenerator -rows %d -attributes %d -arity %d-%d"
+        + " -labels %d -depth %d -noise %s -seed %d\n", rows, attributes, minArity, maxArity,
+        labels, depth, noise, seed));
+    header.append("%%");
+    for (int label = 0; label < labels; label++) {
+      header.append(',').append(labelName(label));
+    }
+    header.append('\n');
+    for (int i = 0; i < attributes; i++) {
+      header.append("##,").append(attributeName(i));
+      for (int value = 0; value < arity(i); value++) {
+        header.append(',').append(valueName(value));
+      }
+      header.append('\n');
+    }
+    return header.toString();
+  }
+
+  /**
+   * Draw the attribute codes of a row followed by its label code.
+   */
+  private void nextRow(SplittableRandom random, int[] codes) {
+    for (int i = 0; i < attributes; i++) {
+      codes[i] = random.nextInt(arity(i));
+    }
+    int node = 0;
+    int attribute;
+    while ((attribute = splitAttribute[node]) >= 0) {
+      node = children[childOffset[node] + codes[attribute]];
+    }
+    codes[attributes] =
+        noise > 0 && random.nextDouble() < noise ? random.nextInt(labels) : labelCode[node];
+  }
+
+  /**
+   * Draw a complete tree of the configured depth, each path splitting on distinct attributes and
+   * each leaf predicting a random label.
+   */
+  private void plantTree(SplittableRandom random) {
+    List<int[]> nodes = new ArrayList<int[]>(); // {splitAttribute, childOffset, labelCode}
+    List<Integer> slots = new ArrayList<Integer>();
+    boolean[] used = new boolean[attributes];
+    plantNode(random, Math.min(depth, attributes), used, nodes, slots);
+
+    splitAttribute = new int[nodes.size()];
+    childOffset = new int[nodes.size()];
+    labelCode = new int[nodes.size()];
+    for (int n = 0; n < nodes.size(); n++) {
+      splitAttribute[n] = nodes.get(n)[0];
+      childOffset[n] = nodes.get(n)[1];
+      labelCode[n] = nodes.get(n)[2];
+    }
+    children = new int[slots.size()];
+    for (int slot = 0; slot < children.length; slot++) {
+      children[slot] = slots.get(slot);
+    }
+  }
+
+  /**
+   * Append a node and its subtree in depth-first order.
+   *
+   * @return the number given to the node
+   */
+  private int plantNode(SplittableRandom random, int levels, boolean[] used, List<int[]> nodes,
+      List<Integer> slots) {
+    int n = nodes.size();
+    if (levels == 0) {
+      nodes.add(new int[] {-1, 0, random.nextInt(labels)});
+      return n;
+    }
+    int attribute;
+    do {
+      attribute = random.nextInt(attributes);
+    } while (used[attribute]);
+    int offset = slots.size();
+    nodes.add(new int[] {attribute, offset, -1});
+    for (int value = 0; value < arity(attribute); value++) {
+      slots.add(-1);
+    }
+    used[attribute] = true;
+    for (int value = 0; value < arity(attribute); value++) {
+      slots.set(offset + value, plantNode(random, levels - 1, used, nodes, slots));
+    }
+    used[attribute] = false;
+    return n;
+  }
+
+  public static void main(String[] args) throws IOException {
+    if (args.length < 1 || args.length % 2 != 1) {
+      System.out.println("usage: java DataSetGenerator <filename> [-rows n] [-attributes n]"
+          + " [-arity n|min-max] [-labels n] [-depth n] [-noise p] [-seed n]");
+      System.out.println("a filename of - writes to standard output");
+      System.exit(-1);
+    }
+    DataSetGenerator generator = new DataSetGenerator();
+    try {
+      for (int i = 1; i < args.length; i += 2) {
+        String value = args[i + 1];
+        switch (args[i]) {
+          case "-rows":
+            generator.setRows(Integer.parseInt(value));
+            break;
+          case "-attributes":
+            generator.setAttributes(Integer.parseInt(value));
+            break;
+          case "-arity":
+            int dash = value.indexOf('-');
+            generator.setArity(Integer.parseInt(dash < 0 ? value : value.substring(0, dash)),
+                Integer.parseInt(dash < 0 ? value : value.substring(dash + 1)));
+            break;
+          case "-labels":
+            generator.setLabels(Integer.parseInt(value));
+            break;
+          case "-depth":
+            generator.setDepth(Integer.parseInt(value));
+            break;
+          case "-noise":
+            generator.setNoise(Double.parseDouble(value));
+            break;
+          case "-seed":
+            generator.setSeed(Long.parseLong(value));
+            break;
+          default:
+            System.out.println("unknown option " + args[i]);
+            System.exit(-1);
+        }
+      }
+    } catch (IllegalArgumentException e) {
+      System.out.println(e.getMessage());
+      System.exit(-1);
+    }
+    if (args[0].equals("-")) {
+      generator.write(System.out);
+    } else {
+      generator.write(args[0]);
+    }
+  }
+}
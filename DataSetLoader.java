@@ -0,0 +1,528 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+
+/**
+ * Reads a data file in the format described in HW3.createDataSet into a DataSet. The file is
+ * memory-mapped and instance lines are tokenized as bytes: each value is resolved to its code
+ * through a hash of its bytes per attribute and written straight into the DataSet columns, so no
+ * String is created per row. Comment, label and attribute lines are few and go through the String
+ * based DataSet methods. Values of numeric attributes are parsed from the bytes too, falling back to
+ * Float.parseFloat only for forms the byte parser does not read exactly.
+ *
+ * Instance lines are independent once the label and attribute lines are read, so the data section
+ * is cut into line-aligned chunks parsed on separate threads, each into its own columns. The chunk
+ * columns are then appended in file order, which keeps the original row order. Ranges larger than
+ * one mapping window are mapped window by window, each window starting at the first line the
+ * previous one did not hold completely.
+ */
+public class DataSetLoader {
+  private static final long WINDOW = 1L << 30; // bytes mapped at once
+  private static final long MIN_CHUNK = 1L << 20; // bytes of data below which no chunk is split off
+  private static final int SCAN = 1 << 16; // bytes read at once while looking for a line end
+
+  private final int threads; // threads parsing the data section
+  private long rows; // instances loaded by the last call to load
+  private long elapsedNanos; // time taken by the last call to load
+
+  /**
+   * Parses with one thread per available processor.
+   */
+  public DataSetLoader() {
+    this(Runtime.getRuntime().availableProcessors());
+  }
+
+  /**
+   * Parses with the given number of threads, 1 parsing the file on the calling thread.
+   */
+  public DataSetLoader(int threads) {
+    if (threads < 1) {
+      throw new IllegalArgumentException("threads must be at least 1: " + threads);
+    }
+    this.threads = threads;
+  }
+
+  /**
+   * Loads the whole file.
+   */
+  public DataSet load(String file) throws IOException {
+    long start = System.nanoTime();
+    DataSet set = new DataSet();
+    try (FileChannel channel = FileChannel.open(Paths.get(file), StandardOpenOption.READ)) {
+      long size = channel.size();
+      long dataStart = readHeader(channel, set);
+      if (dataStart < size) {
+        ByteDictionary[] dictionaries = dictionaries(set);
+        long[] bounds = chunkBounds(channel, dataStart, size);
+        if (bounds.length == 2) {
+          parseRange(channel, dataStart, size, new Parser(set, dictionaries));
+        } else {
+          parseChunks(channel, bounds, set, dictionaries);
+        }
+      }
+    }
+    rows = set.size();
+    elapsedNanos = System.nanoTime() - start;
+    return set;
+  }
+
+  /**
+   * Receives the rows of a file read block by block, see scan.
+   */
+  interface BlockConsumer {
+    void accept(DataSet block) throws IOException;
+  }
+
+  /**
+   * Reads the file in blocks of about blockBytes of instance lines. Each block is parsed into a
+   * DataSet of its own sharing the meta-data and handed to the consumer in file order, so only one
+   * block of rows is held at a time whatever the size of the file.
+   *
+   * @return an empty DataSet holding the labels, attributes and attribute values of the file
+   */
+  DataSet scan(String file, long blockBytes, BlockConsumer consumer) throws IOException {
+    long start = System.nanoTime();
+    DataSet set = new DataSet();
+    rows = 0;
+    try (FileChannel channel = FileChannel.open(Paths.get(file), StandardOpenOption.READ)) {
+      long size = channel.size();
+      long position = readHeader(channel, set);
+      if (position < size) {
+        ByteDictionary[] dictionaries = dictionaries(set);
+        ByteBuffer scan = ByteBuffer.allocate(SCAN);
+        while (position < size) {
+          long end = size - position <= blockBytes ? size
+              : nextLineStart(channel, position + blockBytes, size, scan);
+          DataSet block = set.emptyCopy();
+          long[] bounds = chunkBounds(channel, position, end);
+          if (bounds.length == 2) {
+            parseRange(channel, position, end, new Parser(block, dictionaries));
+          } else {
+            parseChunks(channel, bounds, block, dictionaries);
+          }
+          rows += block.size();
+          consumer.accept(block);
+          position = end;
+        }
+      }
+    }
+    elapsedNanos = System.nanoTime() - start;
+    return set;
+  }
+
+  /**
+   * Number of instances read by the last load or scan.
+   */
+  public long getRows() {
+    return rows;
+  }
+
+  /**
+   * Throughput of the last load or scan, in instances per second.
+   */
+  public double getRowsPerSecond() {
+    return elapsedNanos == 0 ? 0 : rows * 1e9 / elapsedNanos;
+  }
+
+  /**
+   * Reads the comment, label and attribute lines at the top of the file into the set.
+   *
+   * @return the offset of the first instance line, or the file size when there is none
+   */
+  private static long readHeader(FileChannel channel, DataSet set) throws IOException {
+    long size = channel.size();
+    int length = (int) Math.min(WINDOW, size);
+    MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, length);
+    int lineStart = 0;
+    while (lineStart < length) {
+      int lineEnd = lineStart;
+      while (lineEnd < length && buffer.get(lineEnd) != '\n') {
+        lineEnd++;
+      }
+      if (lineEnd == length && length < size) {
+        throw new IOException("Header longer than " + WINDOW + " bytes");
+      }
+      int contentEnd = contentEnd(buffer, lineStart, lineEnd);
+      if (contentEnd > lineStart && !isMeta(buffer, lineStart, contentEnd)) {
+        return lineStart;
+      }
+      byte first = contentEnd > lineStart ? buffer.get(lineStart) : 0;
+      if (first == '%') {
+        set.addLabels(decode(buffer, lineStart, contentEnd));
+      } else if (first == '#') {
+        set.addAttribute(decode(buffer, lineStart, contentEnd));
+      }
+      lineStart = lineEnd + 1;
+    }
+    return size;
+  }
+
+  /**
+   * True for comment, label and attribute lines.
+   */
+  private static boolean isMeta(MappedByteBuffer buffer, int start, int end) {
+    if (end - start < 2) {
+      return false;
+    }
+    byte first = buffer.get(start);
+    return (first == '/' || first == '%' || first == '#') && buffer.get(start + 1) == first;
+  }
+
+  /**
+   * End of the line content, dropping the carriage return of a CRLF line end.
+   */
+  private static int contentEnd(MappedByteBuffer buffer, int lineStart, int lineEnd) {
+    if (lineEnd > lineStart && buffer.get(lineEnd - 1) == '\r') {
+      return lineEnd - 1;
+    }
+    return lineEnd;
+  }
+
+  private static String decode(MappedByteBuffer buffer, int start, int end) {
+    byte[] bytes = new byte[end - start];
+    buffer.get(start, bytes);
+    return new String(bytes, StandardCharsets.UTF_8);
+  }
+
+  /**
+   * One dictionary per attribute, null for a numeric one, then one for the labels.
+   */
+  private static ByteDictionary[] dictionaries(DataSet set) {
+    int attributeCount = set.attributes.size();
+    ByteDictionary[] dictionaries = new ByteDictionary[attributeCount + 1];
+    for (int i = 0; i < attributeCount; i++) {
+      if (!set.isNumeric(i)) {
+        dictionaries[i] = new ByteDictionary(set.attributeValues.get(set.attributes.get(i)));
+      }
+    }
+    dictionaries[attributeCount] = new ByteDictionary(set.labels);
+    return dictionaries;
+  }
+
+  /**
+   * Cut [from, to) into at most one chunk per thread, every chunk starting at a line start.
+   *
+   * @return the chunk boundaries, from first and to last
+   */
+  private long[] chunkBounds(FileChannel channel, long from, long to) throws IOException {
+    int chunks = (int) Math.max(1, Math.min(threads, (to - from) / MIN_CHUNK));
+    long[] bounds = new long[chunks + 1];
+    bounds[0] = from;
+    int count = 1;
+    ByteBuffer scan = ByteBuffer.allocate(SCAN);
+    for (int i = 1; i < chunks; i++) {
+      long bound = nextLineStart(channel, Math.max(bounds[count - 1], from + (to - from) * i / chunks), to, scan);
+      if (bound > bounds[count - 1] && bound < to) {
+        bounds[count++] = bound;
+      }
+    }
+    bounds[count++] = to;
+    return Arrays.copyOf(bounds, count);
+  }
+
+  /**
+   * Offset just after the first newline at or after position, or to when there is none.
+   */
+  private static long nextLineStart(FileChannel channel, long position, long to, ByteBuffer scan)
+      throws IOException {
+    while (position < to) {
+      scan.clear();
+      int read = channel.read(scan, position);
+      if (read <= 0) {
+        return to;
+      }
+      for (int i = 0; i < read; i++) {
+        if (scan.get(i) == '\n') {
+          return position + i + 1;
+        }
+      }
+      position += read;
+    }
+    return to;
+  }
+
+  /**
+   * Parse every chunk on its own thread into its own columns, then append them in file order.
+   */
+  private void parseChunks(FileChannel channel, long[] bounds, DataSet set,
+      ByteDictionary[] dictionaries) throws IOException {
+    List<ForkJoinTask<DataSet>> tasks = new ArrayList<ForkJoinTask<DataSet>>(bounds.length - 1);
+    for (int i = 0; i < bounds.length - 1; i++) {
+      long from = bounds[i];
+      long to = bounds[i + 1];
+      tasks.add(ForkJoinTask.adapt(() -> {
+        DataSet chunk = set.emptyCopy();
+        parseRange(channel, from, to, new Parser(chunk, dictionaries));
+        return chunk;
+      }));
+    }
+    ForkJoinPool pool = new ForkJoinPool(tasks.size());
+    try {
+      for (ForkJoinTask<DataSet> task : tasks) {
+        pool.execute(task);
+      }
+      List<DataSet> chunks = new ArrayList<DataSet>(tasks.size());
+      for (ForkJoinTask<DataSet> task : tasks) {
+        chunks.add(task.join());
+      }
+      set.appendAll(chunks);
+    } catch (RuntimeException e) {
+      for (Throwable cause = e.getCause(); cause != null; cause = cause.getCause()) {
+        if (cause instanceof IOException) {
+          throw (IOException) cause;
+        }
+      }
+      throw e;
+    } finally {
+      pool.shutdown();
+    }
+  }
+
+  /**
+   * Parse the instance lines in [from, to), which starts at a line start and ends at a line end or
+   * at the end of the file.
+   */
+  private static void parseRange(FileChannel channel, long from, long to, Parser parser)
+      throws IOException {
+    long position = from;
+    while (position < to) {
+      long length = Math.min(WINDOW, to - position);
+      MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, position, length);
+      int consumed = parser.parseLines(buffer, (int) length, position + length == to);
+      if (consumed == 0) {
+        throw new IOException("Line longer than " + WINDOW + " bytes at offset " + position);
+      }
+      position += consumed;
+    }
+  }
+
+  /**
+   * Tokenizes instance lines into the columns of one DataSet.
+   */
+  private static class Parser {
+    private final DataSet set;
+    private final ByteDictionary[] dictionaries; // per attribute, then one for the labels
+    private final int[] codes; // codes of the current line, reused across lines
+    private final float[] values; // numeric values of the current line, reused across lines
+
+    Parser(DataSet set, ByteDictionary[] dictionaries) {
+      this.set = set;
+      this.dictionaries = dictionaries;
+      this.codes = new int[dictionaries.length];
+      this.values = new float[dictionaries.length];
+    }
+
+    /**
+     * Parses the lines in [0, to) of the buffer.
+     *
+     * @param last true when to is the end of the range, so a final line without newline is complete
+     * @return the number of bytes consumed, up to the end of the last complete line
+     */
+    int parseLines(MappedByteBuffer buffer, int to, boolean last) {
+      int lineStart = 0;
+      while (lineStart < to) {
+        int lineEnd = lineStart;
+        while (lineEnd < to && buffer.get(lineEnd) != '\n') {
+          lineEnd++;
+        }
+        if (lineEnd == to && !last) {
+          break;
+        }
+        int contentEnd = contentEnd(buffer, lineStart, lineEnd);
+        if (contentEnd == lineStart) {
+          // blank line
+        } else if (!isMeta(buffer, lineStart, contentEnd)) {
+          parseInstance(buffer, lineStart, contentEnd);
+        } else if (buffer.get(lineStart) != '/') {
+          System.err.println("Label or attribute line after the instances : check input files");
+        }
+        lineStart = lineEnd + 1;
+      }
+      return Math.min(lineStart, to);
+    }
+
+    /**
+     * Resolves the comma separated values of an instance line and appends them as one row.
+     */
+    private void parseInstance(MappedByteBuffer buffer, int start, int end) {
+      int tokenStart = start;
+      for (int column = 0; column < codes.length; column++) {
+        if (tokenStart > end) {
+          System.err.println("Instance doesn't contain enough attributes");
+          return;
+        }
+        int tokenEnd = tokenStart;
+        while (tokenEnd < end && buffer.get(tokenEnd) != ',') {
+          tokenEnd++;
+        }
+        if (dictionaries[column] == null) {
+          try {
+            values[column] = parseFloat(buffer, tokenStart, tokenEnd);
+          } catch (NumberFormatException e) {
+            System.err.println("Missing attribute : check input files");
+            return;
+          }
+          tokenStart = tokenEnd + 1;
+          continue;
+        }
+        codes[column] = dictionaries[column].code(buffer, tokenStart, tokenEnd);
+        if (codes[column] < 0) {
+          System.err.println(column < codes.length - 1 ? "Missing attribute : check input files"
+              : "Missing label : check input files");
+          return;
+        }
+        tokenStart = tokenEnd + 1;
+      }
+      set.addRow(codes, values);
+    }
+  }
+
+  // 10^k for k <= 10, all exact as floats
+  private static final float[] POW10 = {1e0f, 1e1f, 1e2f, 1e3f, 1e4f, 1e5f, 1e6f, 1e7f, 1e8f,
+      1e9f, 1e10f};
+
+  /**
+   * Value of the number held in [start, end) of the buffer, as Float.parseFloat would read it.
+   * Plain decimals whose digits make an integer below 2^24 are read from the bytes: it and the
+   * power of ten are both exact floats, so their quotient is the correctly rounded value. Any
+   * other form goes through Float.parseFloat.
+   *
+   * @throws NumberFormatException when the bytes are not a number
+   */
+  static float parseFloat(MappedByteBuffer buffer, int start, int end) {
+    int i = start;
+    boolean negative = false;
+    if (i < end && (buffer.get(i) == '-' || buffer.get(i) == '+')) {
+      negative = buffer.get(i) == '-';
+      i++;
+    }
+    int mantissa = 0;
+    int digits = 0;
+    int decimals = -1; // digits after the point, -1 before it
+    for (; i < end; i++) {
+      byte b = buffer.get(i);
+      if (b >= '0' && b <= '9') {
+        mantissa = 10 * mantissa + (b - '0');
+        if (++digits > 9) {
+          break;
+        }
+        if (decimals >= 0) {
+          decimals++;
+        }
+      } else if (b == '.' && decimals < 0) {
+        decimals = 0;
+      } else {
+        break;
+      }
+    }
+    if (i == end && digits > 0 && mantissa < 1 << 24 && decimals < POW10.length) {
+      float value = decimals > 0 ? mantissa / POW10[decimals] : mantissa;
+      return negative ? -value : value;
+    }
+    return Float.parseFloat(decode(buffer, start, end));
+  }
+
+  /**
+   * Open addressing hash table from the UTF-8 bytes of a value to its position in a value list.
+   */
+  static class ByteDictionary {
+    private final byte[][] keys;
+    private final int[] codes;
+    private final int mask;
+
+    ByteDictionary(List<String> values) {
+      int capacity = Integer.highestOneBit(Math.max(2, values.size()) * 2 - 1) << 1;
+      keys = new byte[capacity][];
+      codes = new int[capacity];
+      mask = capacity - 1;
+      for (int code = 0; code < values.size(); code++) {
+        byte[] key = values.get(code).getBytes(StandardCharsets.UTF_8);
+        int slot = spread(hash(key, 0, key.length)) & mask;
+        while (keys[slot] != null && !equal(keys[slot], key, 0, key.length)) {
+          slot = (slot + 1) & mask;
+        }
+        if (keys[slot] == null) { // the first occurrence of a repeated value keeps its code
+          keys[slot] = key;
+          codes[slot] = code;
+        }
+      }
+    }
+
+    /**
+     * Code of the value held in [start, end) of the buffer, or -1 when unknown.
+     */
+    int code(MappedByteBuffer buffer, int start, int end) {
+      int hash = 0;
+      for (int i = start; i < end; i++) {
+        hash = 31 * hash + buffer.get(i);
+      }
+      int slot = spread(hash) & mask;
+      byte[] key;
+      while ((key = keys[slot]) != null) {
+        if (key.length == end - start && matches(key, buffer, start)) {
+          return codes[slot];
+        }
+        slot = (slot + 1) & mask;
+      }
+      return -1;
+    }
+
+    private static int hash(byte[] bytes, int start, int end) {
+      int hash = 0;
+      for (int i = start; i < end; i++) {
+        hash = 31 * hash + bytes[i];
+      }
+      return hash;
+    }
+
+    private static int spread(int hash) {
+      return hash ^ (hash >>> 16);
+    }
+
+    private static boolean equal(byte[] key, byte[] other, int start, int end) {
+      if (key.length != end - start) {
+        return false;
+      }
+      for (int i = 0; i < key.length; i++) {
+        if (key[i] != other[start + i]) {
+          return false;
+        }
+      }
+      return true;
+    }
+
+    private static boolean matches(byte[] key, MappedByteBuffer buffer, int start) {
+      for (int i = 0; i < key.length; i++) {
+        if (key[i] != buffer.get(start + i)) {
+          return false;
+        }
+      }
+      return true;
+    }
+  }
+
+  /**
+   * Loads each file given as argument and reports its throughput.
+   */
+  public static void main(String[] args) throws IOException {
+    if (args.length < 1) {
+      System.out.println("usage: java DataSetLoader <filename> ...");
+      System.exit(-1);
+    }
+    DataSetLoader loader = new DataSetLoader();
+    for (String file : args) {
+      loader.load(file);
+      System.out.format("%s %d rows %.0f rows/sec\n", file, loader.getRows(),
+          loader.getRowsPerSecond());
+    }
+  }
+}
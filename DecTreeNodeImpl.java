@@ -0,0 +1,68 @@
+/**
+ * DecTreeNode that also keeps the DataSet codes of its label, split attribute and parent attribute
+ * value, so the tree can be grown and walked on integer codes while print() keeps working on the
+ * inherited String fields.
+ *
+ * Children of an internal node are added in the order of the attribute values, so the child for
+ * value code v is children.get(v). Several values share one child when empty branches are merged
+ * (TreeOptions.setMergeEmptyBranches) or values are grouped (TreeOptions.setMaxBranches). The
+ * shared child is listed under each of them and carries the lowest of them as its
+ * parentAttributeValueCode; walks visiting each node once skip the other slots, see isRepeat.
+ *
+ * A node splitting on a numeric attribute has two children: children.get(0) for the values at or
+ * below its threshold and children.get(1) for the others, see branch.
+ */
+public class DecTreeNodeImpl extends DecTreeNode {
+  int labelCode; // position of label in the labels list
+  int attributeIndex; // position of attribute in the attributes list, -1 for a leaf
+  int parentAttributeValueCode; // position of parentAttributeValue, -1 for the root
+  // training rows per label reaching the node, or their weight in a weighted build with
+  // labelCounts null; both null when no row reaches it or the tree was read from a model file
+  int[] labelCounts;
+  double[] labelWeights;
+  double gain; // information gain of the split, internal nodes grown by DecisionTreeImpl only
+  float threshold = Float.NaN; // split point of a numeric split, NaN for any other node
+  // weight of the tune rows reaching the node that it classifies correctly as a leaf, and that its
+  // unpruned subtree classifies correctly; only used while pruning
+  double tuneLeafCorrect;
+  double tuneSubtreeCorrect;
+
+  DecTreeNodeImpl(String _label, int _labelCode, String _attribute, int _attributeIndex,
+      String _parentAttributeValue, int _parentAttributeValueCode, boolean _terminal) {
+    super(_label, _attribute, _parentAttributeValue, _terminal);
+    labelCode = _labelCode;
+    attributeIndex = _attributeIndex;
+    parentAttributeValueCode = _parentAttributeValueCode;
+  }
+
+  /**
+   * Child followed by an instance whose split attribute has the given value code.
+   */
+  DecTreeNodeImpl getChild(int valueCode) {
+    return (DecTreeNodeImpl) children.get(valueCode);
+  }
+
+  /**
+   * Position of the child followed by the given row of a DataSet sharing the training meta-values.
+   */
+  int branch(DataSet set, int row) {
+    if (threshold != threshold) {
+      return set.getAttributeCode(row, attributeIndex);
+    }
+    return set.getNumericValue(row, attributeIndex) <= threshold ? 0 : 1;
+  }
+
+  /**
+   * Name of a child of a numeric split: the comparison of the value with the threshold.
+   */
+  static String branchName(int branch, float threshold) {
+    return (branch == 0 ? "<=" : ">") + threshold;
+  }
+
+  /**
+   * Whether the child for the given value code is a shared child already listed under a lower value.
+   */
+  boolean isRepeat(int valueCode) {
+    return getChild(valueCode).parentAttributeValueCode != valueCode;
+  }
+}
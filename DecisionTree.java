@@ -10,6 +10,20 @@ abstract class DecisionTree {
    */
   abstract public String classify(Instance instance);
 
+  /**
+   * Evaluates the learned decision tree on every instance of a data set with the same meta-values
+   * as the training set. Implementations may override this to classify in bulk.
+   * 
+   * @return the position in the labels list of the classification of each instance, in order
+   */
+  public int[] classifyAll(DataSet set) {
+    int[] classifications = new int[set.size()];
+    for (int i = 0; i < classifications.length; i++) {
+      classifications[i] = set.labels.indexOf(classify(set.getInstance(i)));
+    }
+    return classifications;
+  }
+
   /**
    * Prints the tree in specified format.
    */
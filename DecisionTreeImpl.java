@@ -1,7 +1,17 @@
+import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Comparator;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.IntToDoubleFunction;
 
 /**
  * Fill in the implementation details of the class DecisionTree using this file.
@@ -15,13 +25,41 @@ import java.util.Map;
  * See DecisionTree for a description of default methods.
  */
 public class DecisionTreeImpl extends DecisionTree {
-  private DecTreeNode root;
+  // gains closer than this are tied: rounding noise must not decide between equally good splits
+  private static final double GAIN_TOLERANCE = 1e-10;
+  // n * log2(n) by count n, see nLog2nTable
+  private static final int MAX_TABLE = 1 << 20;
+  private static final double INV_LN2 = 1 / Math.log(2);
+  private static volatile double[] nLog2nTable = new double[0];
+  private DecTreeNodeImpl root;
+  // flat copy of root used by classify, replaced whole when the tree is pruned
+  private volatile CompiledTree compiled;
   // ordered list of class labels
   private List<String> labels;
   // ordered list of attributes
   private List<String> attributes;
   // map to ordered discrete values taken by attributes
   private Map<String, List<String>> attributeValues;
+  // labels in the order majority ties are resolved, see getMostCommonLabel
+  private int[] labelTieOrder;
+  // how the tree is grown
+  private TreeOptions options = new TreeOptions();
+  // training rows while the tree is being built, see buildDecisionTree
+  private DataSet train;
+  private int[] rows;
+  private int[] scratch;
+  private float[] weights; // weight column of train, null when every row weighs 1
+  // whether each attribute is numeric, null when none is
+  private boolean[] numeric;
+  // per numeric attribute, the rows sorted by its value: the range of a node holds the rows of
+  // the node's range of rows, in value order; null for the other attributes
+  private int[][] sorted;
+  // receives the metrics of the build or pruning under way, null when nobody asked for them
+  private TrainingListener listener;
+  private AtomicInteger frontier; // nodes created but not grown yet, only kept for the listener
+  private int nodes; // nodes of the tree so far, counted against options.getMaxNodes()
+  // pool running the build when options ask for more than one thread
+  private ForkJoinPool pool;
 
   /**
    * Answers static questions about decision trees.
@@ -36,40 +74,240 @@ public class DecisionTreeImpl extends DecisionTree {
    * @param train: the training set
    */
   DecisionTreeImpl(DataSet train) {
+    this(train, new TreeOptions());
+  }
+
+  /**
+   * Build a decision tree given only a training set.
+   * 
+   * @param train: the training set
+   * @param options: how to grow the tree
+   */
+  DecisionTreeImpl(DataSet train, TreeOptions options) {
+    this.options = options;
+    this.labels = train.labels;
+    this.attributes = train.attributes;
+    this.attributeValues = train.attributeValues;
+    this.labelTieOrder = labelTieOrder(train.labels);
+    this.root = buildDecisionTree(train, allRows(train));
+    this.compiled = CompiledTree.compile(root, labels.size());
+  }
+
+  /**
+   * Wrap a tree grown elsewhere, e.g. by OutOfCoreTrainer, over the given meta-values.
+   * 
+   * @param meta: a DataSet holding the labels, attributes and attribute values of the tree
+   * @param root: the root of the grown tree
+   */
+  DecisionTreeImpl(DataSet meta, DecTreeNodeImpl root) {
+    this.labels = meta.labels;
+    this.attributes = meta.attributes;
+    this.attributeValues = meta.attributeValues;
+    this.labelTieOrder = labelTieOrder(meta.labels);
+    this.root = root;
+    this.compiled = CompiledTree.compile(root, labels.size());
+  }
+
+  /**
+   * Build a decision tree over a sample of the training rows, e.g. a bootstrap sample.
+   * 
+   * @param train: the training set
+   * @param rows: the rows to grow the tree on, a row listed n times counting n times
+   * @param options: how to grow the tree
+   */
+  DecisionTreeImpl(DataSet train, int[] rows, TreeOptions options) {
+    this.options = options;
     this.labels = train.labels;
     this.attributes = train.attributes;
     this.attributeValues = train.attributeValues;
-    this.root = _buildDecisionTree(train.instances, train.attributes, train.instances, null);
+    this.labelTieOrder = labelTieOrder(train.labels);
+    this.root = buildDecisionTree(train, rows.clone());
+    this.compiled = CompiledTree.compile(root, labels.size());
+  }
+
+  /**
+   * Copy of the tree cut back to what growing it with the given maxDepth and minGain on top of its
+   * own options would give: a node below maxDepth or splitting for less than minGain is a leaf.
+   * Growing a tree once and cutting it back is how CrossValidator tries many depths and gains.
+   *
+   * @param maxDepth: deepest level of a split, 0 for no limit
+   * @param minGain: smallest information gain of a split
+   */
+  DecisionTreeImpl truncated(int maxDepth, double minGain) {
+    DecisionTreeImpl copy = new DecisionTreeImpl();
+    copy.options = options;
+    copy.labels = labels;
+    copy.attributes = attributes;
+    copy.attributeValues = attributeValues;
+    copy.labelTieOrder = labelTieOrder;
+    copy.root = truncate(root, 0, maxDepth, minGain);
+    copy.compiled = CompiledTree.compile(copy.root, labels.size());
+    return copy;
+  }
+
+  private DecTreeNodeImpl truncate(DecTreeNodeImpl node, int depth, int maxDepth, double minGain) {
+    boolean terminal = node.terminal || (maxDepth > 0 && depth >= maxDepth)
+        || (minGain > 0 && node.gain < minGain);
+    DecTreeNodeImpl copy = new DecTreeNodeImpl(node.label, node.labelCode,
+        terminal ? null : node.attribute, terminal ? -1 : node.attributeIndex,
+        node.parentAttributeValue, node.parentAttributeValueCode, terminal);
+    copy.labelCounts = node.labelCounts;
+    copy.labelWeights = node.labelWeights;
+    if (!terminal) {
+      copy.gain = node.gain;
+      copy.threshold = node.threshold;
+      for (int value = 0; value < node.children.size(); value++) {
+        DecTreeNodeImpl child = node.getChild(value);
+        copy.addChild(node.isRepeat(value) ? copy.getChild(child.parentAttributeValueCode)
+            : truncate(child, depth + 1, maxDepth, minGain));
+      }
+    }
+    return copy;
+  }
+
+  /**
+   * The flat form of the tree, for ensembles classifying with many trees.
+   */
+  CompiledTree getCompiledTree() {
+    return compiled;
   }
 
   @Override
   public String classify(Instance instance) {
-    DecTreeNode currentNode = root;
-    while (!currentNode.terminal) {
-      for (DecTreeNode child : currentNode.children) {
-        if (instance.attributes.get(getAttributeIndex(currentNode.attribute))
-            .equals(child.parentAttributeValue)) {
-          currentNode = child;
-          break;
-        }
-      }
+    return labels.get(classifyCode(instance));
+  }
+
+  /**
+   * Classify an instance of a DataSet sharing the training meta-values.
+   *
+   * @return the position of the predicted label in labels
+   */
+  int classifyCode(Instance instance) {
+    return compiled.classify(instance.getDataSet(), instance.getRow());
+  }
+
+  /**
+   * Classify by walking the node objects, as classifyCode did before the tree was compiled. Kept
+   * as the reference the compiled tree is tested and benchmarked against.
+   *
+   * @return the position of the predicted label in labels
+   */
+  int walkClassifyCode(Instance instance) {
+    DataSet set = instance.getDataSet();
+    int row = instance.getRow();
+    DecTreeNodeImpl node = root;
+    while (!node.terminal) {
+      node = node.getChild(node.branch(set, row));
     }
-    return currentNode.label;
+    return node.labelCode;
+  }
+
+  /**
+   * Class probabilities of an instance of a DataSet sharing the training meta-values: the label
+   * histogram of the training rows reaching its leaf, read in one walk down the tree.
+   *
+   * @return the probability of each label, by position in labels
+   */
+  public double[] classifyProba(Instance instance) {
+    double[] proba = new double[labels.size()];
+    compiled.classifyProba(instance.getDataSet(), instance.getRow(), proba);
+    return proba;
+  }
+
+  /**
+   * Immutable snapshot of the tree as it stands, safe to share between threads and unaffected by
+   * later pruning of this tree.
+   */
+  public TreeModel getModel() {
+    return new TreeModel(labels, attributes, attributeValues, compiled);
+  }
+
+  /**
+   * Save the trained tree in the binary format of ModelFile.
+   * 
+   * @param file: the file to write, replaced if it exists
+   */
+  public void save(String file) throws IOException {
+    ModelFile.write(file, labels, attributes, attributeValues, compiled);
   }
 
   @Override
   public void rootInfoGain(DataSet train) {
+    double[] gains = rootInfoGains(train);
+    for (int i = 0; i < gains.length; i++) {
+      System.out.format("%s %.5f\n", train.attributes.get(i), gains[i]);
+    }
+  }
+
+  /**
+   * Information gain of each attribute at the root node for the given DataSet.
+   *
+   * @return the gain of attribute i at position i
+   */
+  double[] rootInfoGains(DataSet train) {
+    if (root != null) {
+      // score on a scratch instance rather than replace the meta-values of this trained tree
+      return new DecisionTreeImpl().rootInfoGains(train);
+    }
     this.labels = train.labels;
     this.attributes = train.attributes;
     this.attributeValues = train.attributeValues;
-    for (String attribute : attributes) {
-      System.out.format("%s %.5f\n", attribute, infoGain(attribute, train.instances));
+    int[] candidates = new int[attributes.size()];
+    for (int i = 0; i < candidates.length; i++) {
+      candidates[i] = i;
+    }
+    double[] gains = new double[candidates.length];
+    if (candidates.length == 0) {
+      return gains;
     }
+    this.train = train;
+    this.rows = allRows(train);
+    this.weights = train.getWeights();
+    this.numeric = numericAttributes(train);
+    this.sorted = numeric == null ? null : presort();
+    // a numeric attribute scores its best threshold, and nothing when it takes a single value
+    int[] discrete = discreteCandidates(candidates);
+    float[] thresholds = new float[candidates.length];
+    if (weights != null) {
+      double[][][] counts = weighAttributeValueLabels(0, rows.length, discrete);
+      double[] labelWeights = weighLabels(0, rows.length);
+      if (discrete != candidates) {
+        sweepThresholds(0, rows.length, candidates, labelWeights, counts, thresholds);
+      }
+      double totalWeight = sum(labelWeights);
+      double classEntropy = calculateClassEntropy(labelWeights, totalWeight);
+      for (int i = 0; i < candidates.length; i++) {
+        gains[i] = counts[i] == null ? 0 : infoGain(counts[i], classEntropy, totalWeight);
+      }
+    } else {
+      int[][][] counts = countAttributeValueLabels(0, rows.length, discrete);
+      int[] labelCounts = countLabels(0, rows.length);
+      if (discrete != candidates) {
+        sweepThresholds(0, rows.length, candidates, labelCounts, counts, thresholds);
+      }
+      double classEntropy = calculateClassEntropy(labelCounts, rows.length);
+      for (int i = 0; i < candidates.length; i++) {
+        gains[i] = counts[i] == null ? 0 : infoGain(counts[i], classEntropy, train.size());
+      }
+    }
+    this.train = null;
+    this.rows = null;
+    this.weights = null;
+    this.numeric = null;
+    this.sorted = null;
+    return gains;
+  }
+
+  @Override
+  public int[] classifyAll(DataSet set) {
+    int[] classifications = new int[set.size()];
+    compiled.classifyAll(set, classifications);
+    return classifications;
   }
 
   @Override
   public void printAccuracy(DataSet test) {
-    System.out.format("%.5f\n", this.getAccuracy(test.instances));
+    System.out.format("%.5f\n", this.getAccuracy(test));
   }
 
   /**
@@ -78,14 +316,15 @@ public class DecisionTreeImpl extends DecisionTree {
    * @param test: the test set
    * @return the accuracy
    */
-  private double getAccuracy(List<Instance> examples) {
+  private double getAccuracy(DataSet test) {
+    int[] classifications = classifyAll(test);
     int correct = 0;
-    for (Instance instance : examples) {
-      if (classify(instance).equals(instance.label)) {
+    for (int i = 0; i < classifications.length; i++) {
+      if (classifications[i] == test.getLabelCode(i)) {
         correct++;
       }
     }
-    return (double) correct / examples.size();
+    return (double) correct / classifications.length;
   }
 
   /**
@@ -96,38 +335,177 @@ public class DecisionTreeImpl extends DecisionTree {
    * @param tune:  the tuning set
    */
   DecisionTreeImpl(DataSet train, DataSet tune) {
+    this(train, tune, new TreeOptions());
+  }
+
+  /**
+   * Build a decision tree given a training set then prune it using a tuning set.
+   * 
+   * @param train: the training set
+   * @param tune:  the tuning set
+   * @param options: how to grow the tree
+   */
+  DecisionTreeImpl(DataSet train, DataSet tune, TreeOptions options) {
+    this.options = options;
     this.labels = train.labels;
     this.attributes = train.attributes;
     this.attributeValues = train.attributeValues;
+    this.labelTieOrder = labelTieOrder(train.labels);
+
+    this.root = buildDecisionTree(train, allRows(train));
+    prune(tune);
+  }
+
+  /**
+   * Prune the grown tree using the given tuning set.
+   * 
+   * @param tune: the tuning set
+   */
+  void prune(DataSet tune) {
+    prune(tune, allRows(tune));
+  }
 
-    this.root = _buildDecisionTree(train.instances, train.attributes, train.instances, null);
-    pruneTree(this.root, tune);
+  /**
+   * Prune the grown tree using some rows of a tuning set, e.g. a fold of a cross-validation.
+   * 
+   * @param tune: the tuning set
+   * @param rows: the rows of tune to prune with
+   */
+  void prune(DataSet tune, int[] rows) {
+    TreePruneEvent event = new TreePruneEvent();
+    listener = options.getListener();
+    event.begin();
+    long start = listener != null ? System.nanoTime() : 0;
+    int nodesBefore = event.isEnabled() ? countNodes(root) : 0;
+    pruneTree(this.root, tune, rows);
+    this.compiled = CompiledTree.compile(root, labels.size());
+    if (listener != null) {
+      listener.tuneRowsClassified(rows.length);
+      listener.phaseTimed(TrainingListener.Phase.PRUNE, System.nanoTime() - start);
+      listener = null;
+    }
+    event.end();
+    if (event.shouldCommit()) {
+      event.tuneRows = rows.length;
+      event.nodesBefore = nodesBefore;
+      event.nodesAfter = countNodes(root);
+      event.commit();
+    }
   }
 
   /**
    * Prune the decision tree using the given tuning set.
+   *
+   * Every tune row is routed through the tree once to record, at each node, the weight of the rows
+   * reaching it that are classified correctly by the node as a leaf and by its unpruned subtree.
+   * The prunes are then decided bottom-up from those counts alone. Making a node a leaf only changes the outcome
+   * of the tune rows reaching it, so comparing these counts is the same as comparing the accuracy
+   * of the whole tree on the tune set with and without the prune.
    * 
-   * @param node the current node being pruned
+   * @param root the root of the tree
    * @param tune
+   * @param rows the rows of tune to prune with
    */
-  private void pruneTree(DecTreeNode node, DataSet tune) {
-    if (node.terminal) {
+  private void pruneTree(DecTreeNodeImpl root, DataSet tune, int[] rows) {
+    if (rows.length == 0) {
+      // the accuracy on an empty tune set is undefined, keep the tree as grown
       return;
     }
+    clearTuneCounts(root);
+    for (int row : rows) {
+      int label = tune.getLabelCode(row);
+      float weight = tune.getWeight(row);
+      DecTreeNodeImpl node = root;
+      while (true) {
+        if (node.labelCode == label) {
+          node.tuneLeafCorrect += weight;
+        }
+        if (node.terminal) {
+          break;
+        }
+        node = node.getChild(node.branch(tune, row));
+      }
+    }
+    countTuneSubtreeCorrect(root);
+    pruneTree(root);
+  }
 
-    for (DecTreeNode child : node.children) {
-      this.pruneTree(child, tune);
-      double accuracyWithoutPruning = getAccuracy(tune.instances);
-      node.terminal = true;
+  /**
+   * Number of nodes of the subtree as it stands, pruned subtrees excluded.
+   */
+  private static int countNodes(DecTreeNodeImpl node) {
+    int nodes = 1;
+    if (!node.terminal) {
+      for (int value = 0; value < node.children.size(); value++) {
+        if (!node.isRepeat(value)) {
+          nodes += countNodes(node.getChild(value));
+        }
+      }
+    }
+    return nodes;
+  }
+
+  /**
+   * Reset the tune counts left by an earlier pruning of the tree.
+   */
+  private void clearTuneCounts(DecTreeNodeImpl node) {
+    node.tuneLeafCorrect = 0;
+    if (!node.terminal) {
+      for (int value = 0; value < node.children.size(); value++) {
+        if (!node.isRepeat(value)) {
+          clearTuneCounts(node.getChild(value));
+        }
+      }
+    }
+  }
+
+  /**
+   * Set tuneSubtreeCorrect from the leaves of the unpruned subtree up.
+   */
+  private double countTuneSubtreeCorrect(DecTreeNodeImpl node) {
+    if (node.terminal) {
+      node.tuneSubtreeCorrect = node.tuneLeafCorrect;
+    } else {
+      node.tuneSubtreeCorrect = 0;
+      for (int value = 0; value < node.children.size(); value++) {
+        if (!node.isRepeat(value)) {
+          node.tuneSubtreeCorrect += countTuneSubtreeCorrect(node.getChild(value));
+        }
+      }
+    }
+    return node.tuneSubtreeCorrect;
+  }
 
-      double accuracyWithPruning = getAccuracy(tune.instances);
-      node.terminal = false;
+  /**
+   * Prune the subtree of the node. Children are pruned in order and the node is tested as a leaf
+   * after its first child, against the first child as pruned and its other children as grown.
+   * Pruning a child never lowers the subtree count, so a node that is not worth pruning then never
+   * becomes worth it later and the remaining tests can be skipped.
+   *
+   * @param node the current node being pruned
+   * @return the weight of the tune rows reaching the node that its pruned subtree classifies
+   *         correctly
+   */
+  private double pruneTree(DecTreeNodeImpl node) {
+    if (node.terminal) {
+      return node.tuneLeafCorrect;
+    }
 
-      // If accuracy is better or the same with pruning, keep it.
-      if (accuracyWithPruning >= accuracyWithoutPruning) {
-        node.terminal = true;
+    DecTreeNodeImpl first = node.getChild(0);
+    double correct = node.tuneSubtreeCorrect - first.tuneSubtreeCorrect + pruneTree(first);
+    // If accuracy is better or the same with pruning, keep it.
+    if (node.tuneLeafCorrect >= correct) {
+      node.terminal = true;
+      return node.tuneLeafCorrect;
+    }
+    for (int value = 1; value < node.children.size(); value++) {
+      if (node.isRepeat(value)) {
+        continue;
       }
+      DecTreeNodeImpl child = node.getChild(value);
+      correct += pruneTree(child) - child.tuneSubtreeCorrect;
     }
+    return correct;
   }
 
   @Override
@@ -142,17 +520,27 @@ public class DecisionTreeImpl extends DecisionTree {
    * Prints the subtree of the node with each line prefixed by 4 * k spaces.
    */
   public void printTreeNode(DecTreeNode p, DecTreeNode parent, int k) {
-    StringBuilder sb = new StringBuilder();
-    for (int i = 0; i < k; i++) {
-      sb.append("    ");
-    }
     String value;
     if (parent == null) {
       value = "ROOT";
+    } else if (attributeValues.get(parent.attribute).isEmpty()) {
+      value = p.parentAttributeValue; // numeric split
     } else {
       int attributeValueIndex = this.getAttributeValueIndex(parent.attribute, p.parentAttributeValue);
       value = attributeValues.get(parent.attribute).get(attributeValueIndex);
     }
+    printSubtree(p, value, k);
+  }
+
+  /**
+   * Prints the subtree of the node reached by the given value, or values joined by commas for a
+   * child several values share.
+   */
+  private void printSubtree(DecTreeNode p, String value, int k) {
+    StringBuilder sb = new StringBuilder();
+    for (int i = 0; i < k; i++) {
+      sb.append("    ");
+    }
     sb.append(value);
     if (p.terminal) {
       sb.append(" (" + p.label + ")");
@@ -160,8 +548,24 @@ public class DecisionTreeImpl extends DecisionTree {
     } else {
       sb.append(" {" + p.attribute + "?}");
       System.out.println(sb.toString());
-      for (DecTreeNode child : p.children) {
-        printTreeNode(child, p, k + 1);
+      List<String> values = attributeValues.get(p.attribute);
+      for (int v = 0; v < p.children.size(); v++) {
+        DecTreeNode child = p.children.get(v);
+        if (p.children.indexOf(child) < v) {
+          continue;
+        }
+        if (values.isEmpty()) {
+          // numeric split, whose children are named by their side of the threshold
+          printSubtree(child, child.parentAttributeValue, k + 1);
+          continue;
+        }
+        StringBuilder names = new StringBuilder(values.get(v));
+        for (int w = v + 1; w < p.children.size(); w++) {
+          if (p.children.get(w) == child) {
+            names.append(',').append(values.get(w));
+          }
+        }
+        printSubtree(child, names.toString(), k + 1);
       }
     }
   }
@@ -192,194 +596,1634 @@ public class DecisionTreeImpl extends DecisionTree {
   }
 
   /**
-   * Helper function to get the attribute value for the attribute at the given
-   * 
-   * @param attribute
-   * @param examples
-   * @return double
+   * Count, in one scan of the rows in [from, to), how many rows take each value of each candidate
+   * attribute for each label. The entries of attributes that are not candidates are left null.
+   *
+   * @param from first position in rows
+   * @param to position in rows after the last row
+   * @param candidates indices of the candidate attributes
+   * @return counts[attribute][value][label]
    */
-  private double infoGain(String attribute, List<Instance> examples) {
-    double attributeEntropy = 0;
-    for (String value : attributeValues.get(attribute)) {
-      List<Number> temp = countRowsWithAttributeValue(examples, attribute, value);
-      attributeEntropy += entropy(temp, examples.size());
+  private int[][][] countAttributeValueLabels(int from, int to, int[] candidates) {
+    long start = listener != null ? System.nanoTime() : 0;
+    int[][][] counts = new int[attributes.size()][][];
+    for (int attribute : candidates) {
+      counts[attribute] = new int[attributeValues.get(attributes.get(attribute)).size()][labels.size()];
     }
-
-    return calculateClassEntropy(examples) - attributeEntropy;
+    if (pool != null && to - from >= options.getParallelScoringRows() && candidates.length > 1) {
+      // one task per attribute, each writing only its own slice of the tensor
+      List<ForkJoinTask<?>> tasks = new ArrayList<ForkJoinTask<?>>(candidates.length);
+      for (int attribute : candidates) {
+        int[] candidate = {attribute};
+        tasks.add(ForkJoinTask.adapt(() -> fillAttributeValueLabels(from, to, candidate, counts)));
+      }
+      ForkJoinTask.invokeAll(tasks);
+    } else {
+      fillAttributeValueLabels(from, to, candidates, counts);
+    }
+    lap(TrainingListener.Phase.COUNT, start, to - from);
+    return counts;
   }
 
   /**
-   * Helper function to calculate entropy
+   * Add the rows in [from, to) to the counts of the candidate attributes.
    */
-  private double entropy(List<Number> values, Number totalRows) {
-    double totalEntropy = 0;
-    Number totalRowsWithAttributeValue = values.stream().reduce(0, (a, b) -> a.intValue() + b.intValue());
-    double attributeRatio = totalRowsWithAttributeValue.doubleValue() / totalRows.doubleValue();
-
-    if (totalRowsWithAttributeValue.intValue() == 0) {
-      return 0;
+  private void fillAttributeValueLabels(int from, int to, int[] candidates, int[][][] counts) {
+    for (int i = from; i < to; i++) {
+      int row = rows[i];
+      int label = train.getLabelCode(row);
+      for (int attribute : candidates) {
+        counts[attribute][train.getAttributeCode(row, attribute)][label]++;
+      }
     }
+  }
 
-    for (Number value : values) {
-      if (value.intValue() == 0) {
-        continue;
+  /**
+   * Lookup table of n * log2(n) by count n, grown to the largest count asked for so far up to
+   * MAX_TABLE entries. Counts past the end are computed directly.
+   *
+   * @param totalRows the largest count about to be looked up
+   */
+  static double[] nLog2nTable(int totalRows) {
+    double[] table = nLog2nTable;
+    if (totalRows < table.length || table.length == MAX_TABLE) {
+      return table;
+    }
+    synchronized (DecisionTreeImpl.class) {
+      table = nLog2nTable;
+      if (totalRows >= table.length && table.length < MAX_TABLE) {
+        int size = (int) Math.min(MAX_TABLE, Math.max(totalRows + 1L, 2L * table.length));
+        double[] grown = Arrays.copyOf(table, size);
+        for (int n = Math.max(2, table.length); n < size; n++) {
+          grown[n] = n * Math.log(n) * INV_LN2;
+        }
+        nLog2nTable = table = grown;
       }
-      double attributeValueLabelRatio = value.doubleValue() / totalRowsWithAttributeValue.doubleValue();
-      totalEntropy += attributeValueLabelRatio * Math.log(attributeValueLabelRatio) / Math.log(2);
     }
+    return table;
+  }
 
-    return attributeRatio * totalEntropy * -1;
+  private static double nLog2n(double[] table, int n) {
+    return n < table.length ? table[n] : n * Math.log(n) * INV_LN2;
   }
 
   /**
-   * Helper function to count the number of rows with the given attribute value
-   * Count how many rows have the given attributeValue for the given attribute for
-   * each attributeValue
-   * 
-   * @param examples
-   * @param attribute
-   * @param value
-   * @return List<Number>
+   * Helper function to get the information gain of an attribute from its value/label counts.
+   * With c the count of a value and label, n the count of a value and N the total, the entropy
+   * the attribute leaves is (sum of n log2 n - sum of c log2 c) / N, all terms from the table.
+   * The gain is never below 0, where cancelling terms could otherwise leave it a few ulps short.
+   *
+   * @param valueLabelCounts counts[value][label] of the attribute
+   * @param classEntropy entropy of the labels of the rows
+   * @param totalRows number of rows
+   * @return double
    */
-  private List<Number> countRowsWithAttributeValue(List<Instance> examples, String attribute, String value) {
-    List<Number> count = new ArrayList<Number>();
-    this.labels.forEach(label -> count.add(0));
-    int attributeIndex = getAttributeIndex(attribute);
-    for (Instance instance : examples) {
-      if (instance.attributes.get(attributeIndex).equals(value)) {
-        int labelIndex = this.labels.indexOf(instance.label);
-        count.set(labelIndex, count.get(labelIndex).intValue() + 1);
+  static double infoGain(int[][] valueLabelCounts, double classEntropy, int totalRows) {
+    double[] table = nLog2nTable(totalRows);
+    double sum = 0;
+    for (int[] labelCounts : valueLabelCounts) {
+      int valueRows = 0;
+      for (int count : labelCounts) {
+        valueRows += count;
+        sum -= nLog2n(table, count);
       }
+      sum += nLog2n(table, valueRows);
     }
-    return count;
+    return Math.max(0.0, classEntropy - sum / totalRows);
   }
 
   /**
-   * Helper function to calculate class entropy
-   * 
-   * @param examples
+   * Helper function to calculate entropy of the rows taking one attribute value, weighted by the
+   * share of those rows in totalRows.
+   */
+  static double entropy(int[] labelCounts, int totalRows) {
+    int totalRowsWithAttributeValue = 0;
+    for (int count : labelCounts) {
+      totalRowsWithAttributeValue += count;
+    }
+    double[] table = nLog2nTable(totalRowsWithAttributeValue);
+    double sum = nLog2n(table, totalRowsWithAttributeValue);
+    for (int count : labelCounts) {
+      sum -= nLog2n(table, count);
+    }
+    return sum / totalRows;
+  }
+
+  /**
+   * Helper function to calculate class entropy, (N log2 N - sum of c log2 c) / N over the count c
+   * of each label. Labels absent from the rows contribute nothing.
+   *
+   * @param labelCounts number of rows per label
+   * @param totalRows number of rows
    * @return double
    */
-  private double calculateClassEntropy(List<Instance> examples) {
-    List<Number> count = new ArrayList<Number>();
-    double totalRows = examples.size();
-    double classEntropy = 0;
-    this.labels.forEach(label -> count.add(0));
+  static double calculateClassEntropy(int[] labelCounts, int totalRows) {
+    double[] table = nLog2nTable(totalRows);
+    double sum = 0;
+    for (int count : labelCounts) {
+      sum += nLog2n(table, count);
+    }
+    return (nLog2n(table, totalRows) - sum) / totalRows;
+  }
 
-    for (Instance instance : examples) {
-      int labelIndex = this.labels.indexOf(instance.label);
-      count.set(labelIndex, count.get(labelIndex).intValue() + 1);
+  /**
+   * Number of rows per label among the rows in [from, to).
+   */
+  private int[] countLabels(int from, int to) {
+    int[] labelCounts = new int[labels.size()];
+    for (int i = from; i < to; i++) {
+      labelCounts[train.getLabelCode(rows[i])]++;
     }
+    return labelCounts;
+  }
 
-    for (Number value : count) {
-      double valueRatio = value.doubleValue() / totalRows;
-      classEntropy += valueRatio * Math.log(valueRatio) / Math.log(2);
+  /**
+   * Total weight of the rows per label among the rows in [from, to).
+   */
+  private double[] weighLabels(int from, int to) {
+    double[] labelWeights = new double[labels.size()];
+    for (int i = from; i < to; i++) {
+      int row = rows[i];
+      labelWeights[train.getLabelCode(row)] += weights[row];
     }
-    return classEntropy * -1;
+    return labelWeights;
+  }
+
+  static double sum(double[] values) {
+    double sum = 0;
+    for (double value : values) {
+      sum += value;
+    }
+    return sum;
   }
 
   /**
-   * Helper function to check if all examples have the same label.
-   * 
-   * @param instances
-   * @return boolean
+   * Weighted counterpart of countAttributeValueLabels: the total weight of the rows in [from, to)
+   * taking each value of each candidate attribute for each label.
+   *
+   * @return weights[attribute][value][label]
    */
-  private boolean isAllExamplesHaveSameLabel(List<Instance> instances) {
-    String headLabel = instances.get(0).label;
-    for (Instance instance : instances) {
-      if (!instance.label.equals(headLabel)) {
-        return false;
+  private double[][][] weighAttributeValueLabels(int from, int to, int[] candidates) {
+    long start = listener != null ? System.nanoTime() : 0;
+    double[][][] counts = new double[attributes.size()][][];
+    for (int attribute : candidates) {
+      counts[attribute] = new double[attributeValues.get(attributes.get(attribute)).size()][labels.size()];
+    }
+    if (pool != null && to - from >= options.getParallelScoringRows() && candidates.length > 1) {
+      List<ForkJoinTask<?>> tasks = new ArrayList<ForkJoinTask<?>>(candidates.length);
+      for (int attribute : candidates) {
+        int[] candidate = {attribute};
+        tasks.add(ForkJoinTask.adapt(() -> fillAttributeValueWeights(from, to, candidate, counts)));
+      }
+      ForkJoinTask.invokeAll(tasks);
+    } else {
+      fillAttributeValueWeights(from, to, candidates, counts);
+    }
+    lap(TrainingListener.Phase.COUNT, start, to - from);
+    return counts;
+  }
+
+  private void fillAttributeValueWeights(int from, int to, int[] candidates, double[][][] counts) {
+    for (int i = from; i < to; i++) {
+      int row = rows[i];
+      int label = train.getLabelCode(row);
+      float weight = weights[row];
+      for (int attribute : candidates) {
+        counts[attribute][train.getAttributeCode(row, attribute)][label] += weight;
       }
     }
-    return true;
   }
 
   /**
-   * Find the attribute with the maximum information gain.
-   * 
-   * @param instances
-   * @param attributes
-   * @return String
+   * Weighted counterpart of infoGain, likewise never below 0.
+   */
+  static double infoGain(double[][] valueLabelWeights, double classEntropy, double totalWeight) {
+    double attributeEntropy = 0;
+    for (double[] labelWeights : valueLabelWeights) {
+      attributeEntropy += entropy(labelWeights, totalWeight);
+    }
+    return Math.max(0.0, classEntropy - attributeEntropy);
+  }
+
+  /**
+   * Weighted counterpart of entropy: the entropy of the rows taking one attribute value, weighted
+   * by the share of their weight in totalWeight. With w the weight of a label and W their sum it
+   * is (W log2 W - sum of w log2 w) / totalWeight, see wLog2w.
    */
-  private String findMaxImporantAttribute(List<Instance> instances, List<String> attributes) {
-    double maxInfoGain = 0;
+  static double entropy(double[] labelWeights, double totalWeight) {
+    double valueWeight = sum(labelWeights);
+    if (valueWeight == 0) {
+      return 0;
+    }
+    double sum = 0;
+    for (double weight : labelWeights) {
+      sum += wLog2w(weight);
+    }
+    return (wLog2w(valueWeight) - sum) / totalWeight;
+  }
+
+  /**
+   * Weighted counterpart of calculateClassEntropy, (W log2 W - sum of w log2 w) / W over the
+   * weight w of each label.
+   */
+  static double calculateClassEntropy(double[] labelWeights, double totalWeight) {
+    double sum = 0;
+    for (double weight : labelWeights) {
+      sum += wLog2w(weight);
+    }
+    return (wLog2w(totalWeight) - sum) / totalWeight;
+  }
 
-    String topAttribute = attributes.get(0);
-    for (String attribute : attributes) {
-      double infoGain = infoGain(attribute, instances);
-      if (infoGain > maxInfoGain) {
-        maxInfoGain = infoGain;
-        topAttribute = attribute;
+  /**
+   * Weighted counterpart of ratioInfoGain.
+   */
+  static double ratioInfoGain(double[][] valueLabelWeights, double[] labelWeights) {
+    double totalWeight = sum(labelWeights);
+    double attributeEntropy = 0;
+    for (double[] weights : valueLabelWeights) {
+      double valueWeight = sum(weights);
+      if (valueWeight == 0) {
+        continue;
+      }
+      double totalEntropy = 0;
+      for (double weight : weights) {
+        if (weight == 0) {
+          continue;
+        }
+        double ratio = weight / valueWeight;
+        totalEntropy += ratio * Math.log(ratio) / Math.log(2);
       }
+      attributeEntropy += valueWeight / totalWeight * totalEntropy * -1;
     }
+    return ratioClassEntropy(labelWeights, totalWeight) - attributeEntropy;
+  }
 
-    if (maxInfoGain == 0) {
-      List<String> sortedAttributes = new ArrayList<>(attributes);
-      sortedAttributes.sort(String::compareTo);
-      return sortedAttributes.get(0);
+  private static double ratioClassEntropy(double[] labelWeights, double totalWeight) {
+    double classEntropy = 0;
+    for (double weight : labelWeights) {
+      if (weight == 0) {
+        continue;
+      }
+      double ratio = weight / totalWeight;
+      classEntropy += ratio * Math.log(ratio) / Math.log(2);
     }
-    return topAttribute;
+    return classEntropy * -1;
   }
 
-  private DecTreeNode buildDecisionTree(List<Instance> examples, List<String> attributes) {
-    return _buildDecisionTree(examples, attributes, examples, null);
+  /**
+   * Weighted counterpart of findMaxImporantAttribute.
+   */
+  static int findMaxImporantAttribute(double[][][] counts, int[] candidates,
+      double[] labelWeights, List<String> attributeNames) {
+    double totalWeight = sum(labelWeights);
+    double classEntropy = calculateClassEntropy(labelWeights, totalWeight);
+    double[] gains = new double[candidates.length];
+    for (int i = 0; i < candidates.length; i++) {
+      gains[i] = infoGain(counts[candidates[i]], classEntropy, totalWeight);
+    }
+    return maxScore(gains, candidates, i -> ratioInfoGain(counts[candidates[i]], labelWeights),
+        attributeNames);
   }
 
-  private String getMostCommonLabel(List<Instance> examples) {
-    Map<String, Number> outputMap = new HashMap<String, Number>();
+  /**
+   * Whether each attribute of the DataSet is numeric, or null when none is.
+   */
+  private static boolean[] numericAttributes(DataSet set) {
+    if (!set.hasNumericAttributes()) {
+      return null;
+    }
+    boolean[] numeric = new boolean[set.attributes.size()];
+    for (int i = 0; i < numeric.length; i++) {
+      numeric[i] = set.isNumeric(i);
+    }
+    return numeric;
+  }
 
-    for (Instance instance : examples) {
-      if (outputMap.containsKey(instance.label)) {
-        outputMap.put(instance.label, outputMap.get(instance.label).intValue() + 1);
-      } else {
-        outputMap.put(instance.label, 1);
+  /**
+   * The candidates that are not numeric, the candidates themselves when none is.
+   */
+  private int[] discreteCandidates(int[] candidates) {
+    if (numeric == null) {
+      return candidates;
+    }
+    int count = 0;
+    int[] discrete = new int[candidates.length];
+    for (int attribute : candidates) {
+      if (!numeric[attribute]) {
+        discrete[count++] = attribute;
       }
     }
+    return count == candidates.length ? candidates : Arrays.copyOf(discrete, count);
+  }
 
-    String mostCommonOutput = "";
-    int maxCount = 0;
-    for (String key : outputMap.keySet()) {
-      if (outputMap.get(key).intValue() > maxCount) {
-        maxCount = outputMap.get(key).intValue();
-        mostCommonOutput = key;
+  /**
+   * Sort the rows by each numeric attribute, see sorted. This is the only sort of the build: a
+   * split partitions every sorted list stably into the ranges of its children (partitionSorted),
+   * so the rows of each node come sorted to the threshold sweeps.
+   */
+  private int[][] presort() {
+    long start = listener != null ? System.nanoTime() : 0;
+    int[][] sorted = new int[attributes.size()][];
+    long[] keys = new long[rows.length];
+    for (int attribute = 0; attribute < sorted.length; attribute++) {
+      if (!numeric[attribute]) {
+        continue;
+      }
+      // the value in the high half, the position in the low half, so ties keep the row order
+      float[] column = train.getNumericColumn(attribute);
+      for (int i = 0; i < rows.length; i++) {
+        keys[i] = (long) sortableBits(column[rows[i]]) << 32 | i;
+      }
+      if (options.getParallelism() > 1) {
+        Arrays.parallelSort(keys);
+      } else {
+        Arrays.sort(keys);
+      }
+      int[] order = new int[rows.length];
+      for (int i = 0; i < rows.length; i++) {
+        order[i] = rows[(int) keys[i]];
       }
+      sorted[attribute] = order;
     }
+    lap(TrainingListener.Phase.PARTITION, start, 0);
+    return sorted;
+  }
 
-    return mostCommonOutput;
+  /**
+   * The bits of a float as an int of the same order, NaN last.
+   */
+  private static int sortableBits(float value) {
+    int bits = Float.floatToIntBits(value);
+    return bits ^ (bits >> 31 & 0x7FFFFFFF);
   }
 
   /**
-   * Build a decision tree given a training set.
-   * 
-   * @param examples
-   * @param attributes
-   * @param parentExamples
-   * @return DecTreeNode
-   */
-  private DecTreeNode _buildDecisionTree(List<Instance> examples, List<String> attributes,
-      List<Instance> parentExamples, String parentAttribute) {
-    if (examples.isEmpty()) {
-      return new DecTreeNode(getMostCommonLabel(parentExamples), null, parentAttribute, true);
-    } else if (isAllExamplesHaveSameLabel(examples)) {
-      return new DecTreeNode(examples.get(0).label, null, parentAttribute, true);
-    } else if (attributes.isEmpty()) {
-      return new DecTreeNode(getMostCommonLabel(examples), null, parentAttribute, true);
+   * Find the best threshold of each numeric candidate for the rows in [from, to), see
+   * sweepThreshold, setting counts[attribute] to the counts of its two sides. The sweeps scan
+   * the rows like countAttributeValueLabels, one task per attribute on large ranges.
+   *
+   * @param thresholds receives the threshold of each numeric candidate
+   * @return the candidates, less the numeric ones no threshold splits
+   */
+  private int[] sweepThresholds(int from, int to, int[] candidates, int[] labelCounts,
+      int[][][] counts, float[] thresholds) {
+    long start = listener != null ? System.nanoTime() : 0;
+    List<ForkJoinTask<?>> tasks = new ArrayList<ForkJoinTask<?>>();
+    for (int attribute : candidates) {
+      if (numeric[attribute]) {
+        tasks.add(ForkJoinTask.adapt(() -> {
+          counts[attribute] = sweepThreshold(from, to, attribute, labelCounts, thresholds);
+        }));
+      }
+    }
+    if (pool != null && to - from >= options.getParallelScoringRows() && tasks.size() > 1) {
+      ForkJoinTask.invokeAll(tasks);
     } else {
-      String bestAttribute = findMaxImporantAttribute(examples, attributes);
-      DecTreeNode node = new DecTreeNode(getMostCommonLabel(examples), bestAttribute, parentAttribute, false);
-      List<String> allAttributeValues = attributeValues.get(bestAttribute);
-      for (String value : allAttributeValues) {
-        List<Instance> examplesWithAttributeValue = new ArrayList<Instance>();
-        for (Instance instance : examples) {
-          if (instance.attributes.get(getAttributeIndex(bestAttribute)).equals(value)) {
-            examplesWithAttributeValue.add(instance);
-          }
+      for (ForkJoinTask<?> task : tasks) {
+        task.invoke();
+      }
+    }
+    lap(TrainingListener.Phase.COUNT, start, to - from);
+    return splittable(counts, candidates);
+  }
+
+  /**
+   * Weighted counterpart of sweepThresholds.
+   */
+  private int[] sweepThresholds(int from, int to, int[] candidates, double[] labelWeights,
+      double[][][] counts, float[] thresholds) {
+    long start = listener != null ? System.nanoTime() : 0;
+    List<ForkJoinTask<?>> tasks = new ArrayList<ForkJoinTask<?>>();
+    for (int attribute : candidates) {
+      if (numeric[attribute]) {
+        tasks.add(ForkJoinTask.adapt(() -> {
+          counts[attribute] = sweepThreshold(from, to, attribute, labelWeights, thresholds);
+        }));
+      }
+    }
+    if (pool != null && to - from >= options.getParallelScoringRows() && tasks.size() > 1) {
+      ForkJoinTask.invokeAll(tasks);
+    } else {
+      for (ForkJoinTask<?> task : tasks) {
+        task.invoke();
+      }
+    }
+    lap(TrainingListener.Phase.COUNT, start, to - from);
+    return splittable(counts, candidates);
+  }
+
+  /**
+   * The candidates with a count tensor.
+   */
+  private static int[] splittable(Object[] counts, int[] candidates) {
+    int count = 0;
+    int[] splittable = new int[candidates.length];
+    for (int attribute : candidates) {
+      if (counts[attribute] != null) {
+        splittable[count++] = attribute;
+      }
+    }
+    return Arrays.copyOf(splittable, count);
+  }
+
+  /**
+   * Best threshold of a numeric attribute for the rows in [from, to), in one pass over the rows in
+   * value order. Each row moved from the upper side to the lower one changes one label count on
+   * each side, so the sums of c log2 c behind the entropy of both sides are updated in constant
+   * time and every cut between two distinct values is scored. Cuts leaving fewer than
+   * options.getMinRowsPerLeaf() rows on a side are skipped, and ties go to the lowest threshold.
+   * The threshold is the highest value of the lower side.
+   *
+   * @param labelCounts number of rows per label
+   * @param thresholds receives the threshold at thresholds[attribute]
+   * @return counts[side][label] of the rows at or below the threshold and above it, null when no
+   *         cut is allowed
+   */
+  private int[][] sweepThreshold(int from, int to, int attribute, int[] labelCounts,
+      float[] thresholds) {
+    int[] order = sorted[attribute];
+    float[] column = train.getNumericColumn(attribute);
+    int totalRows = to - from;
+    int minRows = Math.max(1, options.getMinRowsPerLeaf());
+    double[] table = nLog2nTable(totalRows);
+    int[] lower = new int[labels.size()];
+    double lowerSum = 0;
+    double upperSum = 0;
+    for (int count : labelCounts) {
+      upperSum += nLog2n(table, count);
+    }
+    double bestCost = Double.POSITIVE_INFINITY;
+    int cut = -1; // position of the last row at or below the best threshold
+    for (int i = from; i < to - minRows; i++) {
+      int label = train.getLabelCode(order[i]);
+      int count = lower[label]++;
+      lowerSum += nLog2n(table, count + 1) - nLog2n(table, count);
+      count = labelCounts[label] - count;
+      upperSum += nLog2n(table, count - 1) - nLog2n(table, count);
+      int lowerRows = i - from + 1;
+      if (lowerRows < minRows || !(column[order[i]] < column[order[i + 1]])) {
+        continue;
+      }
+      // totalRows times the entropy the cut leaves
+      double cost = nLog2n(table, lowerRows) - lowerSum + nLog2n(table, totalRows - lowerRows)
+          - upperSum;
+      if (cost < bestCost - GAIN_TOLERANCE * totalRows) {
+        bestCost = cost;
+        cut = i;
+      }
+    }
+    if (cut < 0) {
+      return null;
+    }
+    int[][] counts = new int[2][labels.size()];
+    for (int i = from; i <= cut; i++) {
+      counts[0][train.getLabelCode(order[i])]++;
+    }
+    for (int label = 0; label < labelCounts.length; label++) {
+      counts[1][label] = labelCounts[label] - counts[0][label];
+    }
+    thresholds[attribute] = column[order[cut]];
+    return counts;
+  }
+
+  /**
+   * Weighted counterpart of sweepThreshold, on the weight of each side.
+   */
+  private double[][] sweepThreshold(int from, int to, int attribute, double[] labelWeights,
+      float[] thresholds) {
+    int[] order = sorted[attribute];
+    float[] column = train.getNumericColumn(attribute);
+    double totalWeight = sum(labelWeights);
+    int minRows = options.getMinRowsPerLeaf();
+    double[] lower = new double[labels.size()];
+    double lowerWeight = 0;
+    double lowerSum = 0;
+    double upperSum = 0;
+    for (double weight : labelWeights) {
+      upperSum += wLog2w(weight);
+    }
+    double bestCost = Double.POSITIVE_INFINITY;
+    int cut = -1;
+    for (int i = from; i < to - 1; i++) {
+      int row = order[i];
+      int label = train.getLabelCode(row);
+      double weight = weights[row];
+      double before = lower[label];
+      lower[label] += weight;
+      lowerWeight += weight;
+      lowerSum += wLog2w(lower[label]) - wLog2w(before);
+      upperSum += wLog2w(labelWeights[label] - lower[label])
+          - wLog2w(labelWeights[label] - before);
+      if (!(column[row] < column[order[i + 1]])) {
+        continue;
+      }
+      double upperWeight = totalWeight - lowerWeight;
+      if (minRows > 1 && (lowerWeight < minRows || upperWeight < minRows)) {
+        continue;
+      }
+      double cost = wLog2w(lowerWeight) - lowerSum + wLog2w(upperWeight) - upperSum;
+      if (cost < bestCost - GAIN_TOLERANCE * totalWeight) {
+        bestCost = cost;
+        cut = i;
+      }
+    }
+    if (cut < 0) {
+      return null;
+    }
+    double[][] counts = new double[2][labels.size()];
+    for (int i = from; i <= cut; i++) {
+      int row = order[i];
+      counts[0][train.getLabelCode(row)] += weights[row];
+    }
+    for (int i = cut + 1; i < to; i++) {
+      int row = order[i];
+      counts[1][train.getLabelCode(row)] += weights[row];
+    }
+    thresholds[attribute] = column[order[cut]];
+    return counts;
+  }
+
+  /**
+   * w * log2(w), 0 for a weight that is not positive.
+   */
+  private static double wLog2w(double weight) {
+    return weight > 0 ? weight * Math.log(weight) * INV_LN2 : 0;
+  }
+
+  /**
+   * The attributes to score for a split of the rows in [from, to): every remaining attribute, or
+   * a random draw of them when the options ask for one.
+   *
+   * @return the candidates in increasing order
+   */
+  private int[] candidates(int from, int to, BitSet attributes) {
+    int[] candidates = attributes.stream().toArray();
+    int draws = options.getAttributesPerNode();
+    if (draws > 0 && draws < candidates.length) {
+      candidates = drawAttributes(candidates, draws, from, to);
+    }
+    return candidates;
+  }
+
+  /**
+   * The candidates whose split leaves every child that rows reach with at least
+   * options.getMinRowsPerLeaf() rows.
+   */
+  private int[] leafSizeCandidates(int[][][] counts, int[] candidates) {
+    int minRows = options.getMinRowsPerLeaf();
+    if (minRows <= 1) {
+      return candidates;
+    }
+    int allowed = 0;
+    for (int attribute : candidates) {
+      boolean large = true;
+      for (int[] labelCounts : counts[attribute]) {
+        int rows = 0;
+        for (int count : labelCounts) {
+          rows += count;
+        }
+        large &= rows == 0 || rows >= minRows;
+      }
+      if (large) {
+        candidates[allowed++] = attribute;
+      }
+    }
+    return Arrays.copyOf(candidates, allowed);
+  }
+
+  /**
+   * Weighted counterpart of leafSizeCandidates, on the weight reaching each child.
+   */
+  private int[] leafSizeCandidates(double[][][] counts, int[] candidates) {
+    int minRows = options.getMinRowsPerLeaf();
+    if (minRows <= 1) {
+      return candidates;
+    }
+    int allowed = 0;
+    for (int attribute : candidates) {
+      boolean large = true;
+      for (double[] labelWeights : counts[attribute]) {
+        double weight = sum(labelWeights);
+        large &= weight == 0 || weight >= minRows;
+      }
+      if (large) {
+        candidates[allowed++] = attribute;
+      }
+    }
+    return Arrays.copyOf(candidates, allowed);
+  }
+
+  /**
+   * Draw count of the candidates at random, seeded from the options seed and the node, so the draw
+   * does not depend on the order nodes are grown in. The node is identified by its range of rows
+   * and its number of candidates, which differs from that of any ancestor sharing its range.
+   *
+   * @return the drawn candidates in increasing order
+   */
+  private int[] drawAttributes(int[] candidates, int count, int from, int to) {
+    long nodeSeed = options.getSeed();
+    nodeSeed = nodeSeed * 0x9E3779B97F4A7C15L + from;
+    nodeSeed = nodeSeed * 0x9E3779B97F4A7C15L + to;
+    nodeSeed = nodeSeed * 0x9E3779B97F4A7C15L + candidates.length;
+    SplittableRandom random = new SplittableRandom(nodeSeed);
+    // partial Fisher-Yates shuffle of the first count positions
+    for (int i = 0; i < count; i++) {
+      int j = i + random.nextInt(candidates.length - i);
+      int swap = candidates[i];
+      candidates[i] = candidates[j];
+      candidates[j] = swap;
+    }
+    int[] drawn = Arrays.copyOf(candidates, count);
+    Arrays.sort(drawn);
+    return drawn;
+  }
+
+  /**
+   * Information gain summed from ratio terms r log2 r, r = c / n, in the order and rounding of
+   * the original implementation, division by Math.log(2) included. Slower than infoGain, it only
+   * rescores the candidates infoGain cannot tell apart, so that their ties go the way they always
+   * have.
+   *
+   * @param valueLabelCounts counts[value][label] of the attribute
+   * @param labelCounts number of rows per label
+   * @param totalRows number of rows
+   */
+  static double ratioInfoGain(int[][] valueLabelCounts, int[] labelCounts, int totalRows) {
+    double attributeEntropy = 0;
+    for (int[] counts : valueLabelCounts) {
+      int valueRows = 0;
+      for (int count : counts) {
+        valueRows += count;
+      }
+      if (valueRows == 0) {
+        continue;
+      }
+      double totalEntropy = 0;
+      for (int count : counts) {
+        if (count == 0) {
+          continue;
+        }
+        double ratio = (double) count / valueRows;
+        totalEntropy += ratio * Math.log(ratio) / Math.log(2);
+      }
+      attributeEntropy += (double) valueRows / totalRows * totalEntropy * -1;
+    }
+    return ratioClassEntropy(labelCounts, totalRows) - attributeEntropy;
+  }
+
+  private static double ratioClassEntropy(int[] labelCounts, int totalRows) {
+    double classEntropy = 0;
+    for (int count : labelCounts) {
+      if (count == 0) {
+        continue;
+      }
+      double ratio = (double) count / totalRows;
+      classEntropy += ratio * Math.log(ratio) / Math.log(2);
+    }
+    return classEntropy * -1;
+  }
+
+  /**
+   * Find the candidate attribute with the maximum information gain given its count tensor. The
+   * first candidate of the largest gain wins; when no gain is above 0, the alphabetically first
+   * candidate does. See maxScore for how ties are told apart.
+   * 
+   * @param counts counts[attribute][value][label] of the candidates
+   * @param candidates indices of the candidate attributes, in increasing order
+   * @param labelCounts number of rows per label
+   * @param totalRows number of rows
+   * @param attributeNames names of the attributes, to break ties when no attribute helps
+   * @return the index of the attribute
+   */
+  static int findMaxImporantAttribute(int[][][] counts, int[] candidates, int[] labelCounts,
+      int totalRows, List<String> attributeNames) {
+    double classEntropy = calculateClassEntropy(labelCounts, totalRows);
+    double[] gains = new double[candidates.length];
+    for (int i = 0; i < candidates.length; i++) {
+      gains[i] = infoGain(counts[candidates[i]], classEntropy, totalRows);
+    }
+    return maxScore(gains, candidates,
+        i -> ratioInfoGain(counts[candidates[i]], labelCounts, totalRows), attributeNames);
+  }
+
+  /**
+   * The candidate of the largest score: the first one in candidates whose score is strictly above
+   * all before it and above 0, or the alphabetically first candidate when there is none.
+   * Lookup-table scores are exact to far better than GAIN_TOLERANCE but round differently from
+   * the original ratio sums, and equal splits are common on small nodes. So the table scores only
+   * narrow the field: a candidate clear of the rest is taken as it is, and candidates within
+   * GAIN_TOLERANCE of the best are rescored by exactScore before comparing.
+   *
+   * @param scores score of each candidate by position in candidates, below 0 if not eligible
+   * @param exactScore the ratio-sum score of the candidate at a position
+   */
+  private static int maxScore(double[] scores, int[] candidates, IntToDoubleFunction exactScore,
+      List<String> attributeNames) {
+    double maxScore = 0;
+    for (double score : scores) {
+      maxScore = Math.max(maxScore, score);
+    }
+    int contenders = 0;
+    int topAttribute = -1;
+    for (int i = 0; i < scores.length; i++) {
+      if (scores[i] >= 0 && scores[i] >= maxScore - GAIN_TOLERANCE) {
+        contenders++;
+        topAttribute = candidates[i];
+      }
+    }
+    if (contenders > 1 || maxScore <= GAIN_TOLERANCE) {
+      double maxExactScore = 0;
+      topAttribute = -1;
+      for (int i = 0; i < scores.length; i++) {
+        if (scores[i] >= 0 && scores[i] >= maxScore - GAIN_TOLERANCE) {
+          double score = exactScore.applyAsDouble(i);
+          if (score > maxExactScore) {
+            maxExactScore = score;
+            topAttribute = candidates[i];
+          }
+        }
+      }
+    }
+    if (topAttribute == -1) {
+      // no attribute helps: take the alphabetically first one
+      topAttribute = candidates[0];
+      for (int attribute : candidates) {
+        if (attributeNames.get(attribute).compareTo(attributeNames.get(topAttribute)) < 0) {
+          topAttribute = attribute;
+        }
+      }
+    }
+    return topAttribute;
+  }
+
+  /**
+   * Gain ratio counterpart of findMaxImporantAttribute: the candidate with the largest information
+   * gain over split information, the entropy of the rows per branch, among the candidates gaining
+   * at least the average. Ties and the case of no useful attribute go as in
+   * findMaxImporantAttribute.
+   */
+  static int findMaxGainRatioAttribute(int[][][] counts, int[] candidates, int[] labelCounts,
+      int totalRows, List<String> attributeNames) {
+    double classEntropy = calculateClassEntropy(labelCounts, totalRows);
+    double[] gains = new double[candidates.length];
+    double[] splitInfos = new double[candidates.length];
+    int[][] branchRows = new int[candidates.length][];
+    for (int i = 0; i < candidates.length; i++) {
+      int[][] valueLabelCounts = counts[candidates[i]];
+      gains[i] = infoGain(valueLabelCounts, classEntropy, totalRows);
+      branchRows[i] = new int[valueLabelCounts.length];
+      for (int value = 0; value < valueLabelCounts.length; value++) {
+        for (int count : valueLabelCounts[value]) {
+          branchRows[i][value] += count;
+        }
+      }
+      splitInfos[i] = calculateClassEntropy(branchRows[i], totalRows);
+    }
+    return maxGainRatio(gains, splitInfos, candidates,
+        i -> ratioInfoGain(counts[candidates[i]], labelCounts, totalRows)
+            / ratioClassEntropy(branchRows[i], totalRows),
+        attributeNames);
+  }
+
+  /**
+   * Weighted counterpart of findMaxGainRatioAttribute.
+   */
+  static int findMaxGainRatioAttribute(double[][][] counts, int[] candidates,
+      double[] labelWeights, List<String> attributeNames) {
+    double totalWeight = sum(labelWeights);
+    double classEntropy = calculateClassEntropy(labelWeights, totalWeight);
+    double[] gains = new double[candidates.length];
+    double[] splitInfos = new double[candidates.length];
+    double[][] branchWeights = new double[candidates.length][];
+    for (int i = 0; i < candidates.length; i++) {
+      double[][] valueLabelWeights = counts[candidates[i]];
+      gains[i] = infoGain(valueLabelWeights, classEntropy, totalWeight);
+      branchWeights[i] = new double[valueLabelWeights.length];
+      for (int value = 0; value < valueLabelWeights.length; value++) {
+        branchWeights[i][value] = sum(valueLabelWeights[value]);
+      }
+      splitInfos[i] = calculateClassEntropy(branchWeights[i], totalWeight);
+    }
+    return maxGainRatio(gains, splitInfos, candidates,
+        i -> ratioInfoGain(counts[candidates[i]], labelWeights)
+            / ratioClassEntropy(branchWeights[i], totalWeight),
+        attributeNames);
+  }
+
+  /**
+   * The candidate of the largest gain ratio among those gaining at least the average.
+   *
+   * @param gains information gain of each candidate, by position in candidates
+   * @param splitInfos split information of each candidate, by position in candidates
+   * @param exactRatio the ratio-sum gain ratio of the candidate at a position, see maxScore
+   */
+  private static int maxGainRatio(double[] gains, double[] splitInfos, int[] candidates,
+      IntToDoubleFunction exactRatio, List<String> attributeNames) {
+    double averageGain = 0;
+    for (double gain : gains) {
+      averageGain += gain;
+    }
+    averageGain /= gains.length;
+
+    double[] ratios = new double[candidates.length];
+    for (int i = 0; i < candidates.length; i++) {
+      // a split sending nearly every row one way has a tiny split information, whatever it gains
+      boolean eligible = gains[i] >= averageGain - GAIN_TOLERANCE && splitInfos[i] > GAIN_TOLERANCE;
+      ratios[i] = eligible ? gains[i] / splitInfos[i] : -1;
+    }
+    return maxScore(ratios, candidates, exactRatio, attributeNames);
+  }
+
+  /**
+   * Group the values of each candidate into at most options.getMaxBranches() subsets, see
+   * groupValues(double[][], int, int), replacing counts[attribute] by the counts of the groups.
+   *
+   * @param majority the majority label of the rows, whose share orders the values
+   * @return groupOf[attribute][value], the group of each value of the candidates
+   */
+  private int[][] groupValues(int[][][] counts, int[] candidates, int majority) {
+    int[][] groupOf = new int[attributes.size()][];
+    for (int attribute : candidates) {
+      int[][] valueLabelCounts = counts[attribute];
+      double[][] valueLabelWeights = new double[valueLabelCounts.length][labels.size()];
+      for (int value = 0; value < valueLabelCounts.length; value++) {
+        for (int label = 0; label < labels.size(); label++) {
+          valueLabelWeights[value][label] = valueLabelCounts[value][label];
+        }
+      }
+      groupOf[attribute] = groupValues(valueLabelWeights, options.getMaxBranches(), majority);
+      int[][] grouped = new int[groups(groupOf[attribute])][labels.size()];
+      for (int value = 0; value < valueLabelCounts.length; value++) {
+        for (int label = 0; label < labels.size(); label++) {
+          grouped[groupOf[attribute][value]][label] += valueLabelCounts[value][label];
+        }
+      }
+      counts[attribute] = grouped;
+    }
+    return groupOf;
+  }
+
+  /**
+   * Weighted counterpart of groupValues.
+   */
+  private int[][] groupValues(double[][][] counts, int[] candidates, int majority) {
+    int[][] groupOf = new int[attributes.size()][];
+    for (int attribute : candidates) {
+      double[][] valueLabelWeights = counts[attribute];
+      groupOf[attribute] = groupValues(valueLabelWeights, options.getMaxBranches(), majority);
+      double[][] grouped = new double[groups(groupOf[attribute])][labels.size()];
+      for (int value = 0; value < valueLabelWeights.length; value++) {
+        for (int label = 0; label < labels.size(); label++) {
+          grouped[groupOf[attribute][value]][label] += valueLabelWeights[value][label];
+        }
+      }
+      counts[attribute] = grouped;
+    }
+    return groupOf;
+  }
+
+  /**
+   * Group the values of an attribute into at most maxGroups subsets from their label counts. The
+   * values some row takes are ordered by the share of sortLabel among their rows and cut into the
+   * contiguous runs leaving the least entropy, by dynamic programming over the cut points. With
+   * two labels that grouping is the best of all groupings; with more it is a good one. Values no
+   * row takes join the group of the most rows.
+   *
+   * @param valueLabelWeights rows, or weight, per value and label
+   * @return the group of each value, groups numbered in the order of their lowest value
+   */
+  static int[] groupValues(double[][] valueLabelWeights, int maxGroups, int sortLabel) {
+    int values = valueLabelWeights.length;
+    double[] valueWeight = new double[values];
+    List<Integer> taken = new ArrayList<Integer>();
+    for (int value = 0; value < values; value++) {
+      valueWeight[value] = sum(valueLabelWeights[value]);
+      if (valueWeight[value] > 0) {
+        taken.add(value);
+      }
+    }
+    int[] groupOf = new int[values];
+    if (taken.isEmpty()) {
+      return groupOf;
+    }
+    // stable, so values of equal share stay in value order
+    taken.sort(Comparator.comparingDouble(
+        value -> valueLabelWeights[value][sortLabel] / valueWeight[value]));
+    int m = taken.size();
+    int k = Math.min(maxGroups, m);
+    // start[g] is the position in taken of the first value of group g
+    int[] start = new int[k + 1];
+    start[k] = m;
+    if (k == m) {
+      for (int g = 0; g < k; g++) {
+        start[g] = g;
+      }
+    } else {
+      int labelCount = valueLabelWeights[0].length;
+      double[][] prefix = new double[m + 1][labelCount];
+      for (int i = 0; i < m; i++) {
+        for (int label = 0; label < labelCount; label++) {
+          prefix[i + 1][label] = prefix[i][label] + valueLabelWeights[taken.get(i)][label];
+        }
+      }
+      // least[g][j] is the least cost of cutting the first j values into g + 1 groups, the last of
+      // which starts at cut[g][j]; the last group is only ever needed for all m values
+      double[][] least = new double[k - 1][m + 1];
+      int[][] cut = new int[k - 1][m + 1];
+      for (int j = 1; j <= m; j++) {
+        least[0][j] = groupCost(prefix, 0, j);
+      }
+      for (int g = 1; g < k - 1; g++) {
+        for (int j = g + 1; j <= m; j++) {
+          least[g][j] = Double.POSITIVE_INFINITY;
+          for (int i = g; i < j; i++) {
+            double cost = least[g - 1][i] + groupCost(prefix, i, j);
+            if (cost < least[g][j]) {
+              least[g][j] = cost;
+              cut[g][j] = i;
+            }
+          }
+        }
+      }
+      double leastCost = Double.POSITIVE_INFINITY;
+      for (int i = k - 1; i < m; i++) {
+        double cost = least[k - 2][i] + groupCost(prefix, i, m);
+        if (cost < leastCost) {
+          leastCost = cost;
+          start[k - 1] = i;
+        }
+      }
+      for (int g = k - 2; g > 0; g--) {
+        start[g] = cut[g][start[g + 1]];
+      }
+    }
+
+    double[] groupWeight = new double[k];
+    int[] order = new int[k]; // groups as cut, in the order of their lowest value
+    Arrays.fill(order, -1);
+    for (int g = 0; g < k; g++) {
+      for (int i = start[g]; i < start[g + 1]; i++) {
+        groupOf[taken.get(i)] = g;
+        groupWeight[g] += valueWeight[taken.get(i)];
+      }
+    }
+    int largest = 0;
+    for (int g = 1; g < k; g++) {
+      if (groupWeight[g] > groupWeight[largest]) {
+        largest = g;
+      }
+    }
+    int groups = 0;
+    for (int value = 0; value < values; value++) {
+      int g = valueWeight[value] > 0 ? groupOf[value] : largest;
+      if (order[g] < 0) {
+        order[g] = groups++;
+      }
+      groupOf[value] = order[g];
+    }
+    return groupOf;
+  }
+
+  /**
+   * Entropy left by the values at positions [from, to) of an ordering as one group, times their
+   * weight: W ln W - sum of w ln w over the weight w of each label and W of the group.
+   *
+   * @param prefix prefix[i][label] is the weight of the label over the first i values
+   */
+  private static double groupCost(double[][] prefix, int from, int to) {
+    double total = 0;
+    double cost = 0;
+    for (int label = 0; label < prefix[to].length; label++) {
+      double weight = prefix[to][label] - prefix[from][label];
+      if (weight > 0) {
+        cost -= weight * Math.log(weight);
+        total += weight;
+      }
+    }
+    return total > 0 ? cost + total * Math.log(total) : 0;
+  }
+
+  /**
+   * Whether each group takes more than one of the values some row takes.
+   *
+   * @param valueLabelCounts rows per value and label
+   */
+  private static boolean[] severalValues(int[][] valueLabelCounts, int[] groupOf) {
+    int[] taken = new int[groups(groupOf)];
+    for (int value = 0; value < valueLabelCounts.length; value++) {
+      for (int count : valueLabelCounts[value]) {
+        if (count > 0) {
+          taken[groupOf[value]]++;
+          break;
+        }
+      }
+    }
+    boolean[] several = new boolean[taken.length];
+    for (int g = 0; g < taken.length; g++) {
+      several[g] = taken[g] > 1;
+    }
+    return several;
+  }
+
+  /**
+   * Weighted counterpart of severalValues, a value being taken when its rows weigh something.
+   */
+  private static boolean[] severalValues(double[][] valueLabelWeights, int[] groupOf) {
+    int[] taken = new int[groups(groupOf)];
+    for (int value = 0; value < valueLabelWeights.length; value++) {
+      if (sum(valueLabelWeights[value]) > 0) {
+        taken[groupOf[value]]++;
+      }
+    }
+    boolean[] several = new boolean[taken.length];
+    for (int g = 0; g < taken.length; g++) {
+      several[g] = taken[g] > 1;
+    }
+    return several;
+  }
+
+  /**
+   * Number of groups of a grouping of values.
+   */
+  static int groups(int[] groupOf) {
+    int groups = 0;
+    for (int group : groupOf) {
+      groups = Math.max(groups, group + 1);
+    }
+    return groups;
+  }
+
+  /**
+   * Grow the tree over the given rows of the training set. The rows are visited through one index
+   * array that is partitioned in place as the tree grows, so each node only owns a range of it.
+   * Sibling subtrees own disjoint ranges, which is what lets them grow as parallel tasks. The
+   * sorted lists of the numeric attributes are partitioned along, range for range.
+   */
+  private DecTreeNodeImpl buildDecisionTree(DataSet train, int[] rows) {
+    this.train = train;
+    this.rows = rows;
+    this.scratch = new int[rows.length];
+    this.weights = train.getWeights();
+    this.nodes = 1;
+    BitSet allAttributes = new BitSet(attributes.size());
+    allAttributes.set(0, attributes.size());
+    TreeBuildEvent event = new TreeBuildEvent();
+    TrainingMetrics metrics = event.isEnabled() ? new TrainingMetrics() : null;
+    this.listener = TrainingListener.both(options.getListener(), metrics);
+    long start = 0;
+    if (listener != null) {
+      frontier = new AtomicInteger(1);
+      listener.buildStarted(rows.length, attributes.size());
+      listener.frontierChanged(1);
+      start = System.nanoTime();
+    }
+    event.begin();
+    this.numeric = numericAttributes(train);
+    this.sorted = numeric == null ? null : presort();
+    // the histograms of the other nodes come from the count tensors of their parents
+    int[] rootCounts = weights == null ? countLabels(0, rows.length) : null;
+    double[] rootWeights = weights == null ? null : weighLabels(0, rows.length);
+    if (listener != null) {
+      listener.rowsScanned(rows.length);
+    }
+
+    DecTreeNodeImpl tree;
+    // a node budget is spent in depth-first order, which only a sequential build keeps fixed
+    if (options.getParallelism() > 1 && options.getMaxNodes() == 0) {
+      pool = new ForkJoinPool(options.getParallelism());
+      try {
+        tree = pool.invoke(new SubtreeTask(0, rows.length, allAttributes, 0, rootCounts,
+            rootWeights, -1, -1, -1));
+      } finally {
+        pool.shutdown();
+        pool = null;
+      }
+    } else {
+      tree = _buildDecisionTree(0, rows.length, allAttributes, 0, rootCounts, rootWeights, -1,
+          -1, -1);
+    }
+    event.end();
+    if (listener != null) {
+      listener.buildFinished(System.nanoTime() - start);
+    }
+    if (metrics != null && event.shouldCommit()) {
+      event.rows = rows.length;
+      event.attributes = attributes.size();
+      event.parallelism = options.getParallelism();
+      event.nodes = metrics.getNodes();
+      event.leaves = metrics.getLeaves();
+      event.depth = metrics.getNodesPerDepth().length - 1;
+      event.rowsScanned = metrics.getRowsScanned();
+      event.splitEvaluations = metrics.getSplitEvaluations();
+      event.peakFrontier = metrics.getPeakFrontier();
+      event.countTime = metrics.getNanos(TrainingListener.Phase.COUNT);
+      event.scoreTime = metrics.getNanos(TrainingListener.Phase.SCORE);
+      event.majorityTime = metrics.getNanos(TrainingListener.Phase.MAJORITY);
+      event.partitionTime = metrics.getNanos(TrainingListener.Phase.PARTITION);
+      event.commit();
+    }
+    this.train = null;
+    this.rows = null;
+    this.scratch = null;
+    this.weights = null;
+    this.numeric = null;
+    this.sorted = null;
+    this.listener = null;
+    this.frontier = null;
+    return tree;
+  }
+
+  /**
+   * Grows one subtree of a parallel build.
+   */
+  @SuppressWarnings("serial")
+  private class SubtreeTask extends RecursiveTask<DecTreeNodeImpl> {
+    private final int from;
+    private final int to;
+    private final BitSet attributes;
+    private final int depth;
+    private final int[] labelCounts;
+    private final double[] labelWeights;
+    private final int parentLabel;
+    private final int parentAttributeIndex;
+    private final int parentValueCode;
+
+    SubtreeTask(int from, int to, BitSet attributes, int depth, int[] labelCounts,
+        double[] labelWeights, int parentLabel, int parentAttributeIndex, int parentValueCode) {
+      this.from = from;
+      this.to = to;
+      this.attributes = attributes;
+      this.depth = depth;
+      this.labelCounts = labelCounts;
+      this.labelWeights = labelWeights;
+      this.parentLabel = parentLabel;
+      this.parentAttributeIndex = parentAttributeIndex;
+      this.parentValueCode = parentValueCode;
+    }
+
+    @Override
+    protected DecTreeNodeImpl compute() {
+      return _buildDecisionTree(from, to, attributes, depth, labelCounts, labelWeights,
+          parentLabel, parentAttributeIndex, parentValueCode);
+    }
+  }
+
+  /**
+   * Index array listing every row of the data set in order.
+   */
+  private static int[] allRows(DataSet set) {
+    int[] rows = new int[set.size()];
+    for (int i = 0; i < rows.length; i++) {
+      rows[i] = i;
+    }
+    return rows;
+  }
+
+  /**
+   * Majority label given the number of rows per label. Ties go to the label met first in
+   * labelTieOrder, which is the order the former HashMap based count visited the labels, so trees
+   * are unchanged by the switch to label codes.
+   *
+   * @return the position of the label in labels
+   */
+  private int getMostCommonLabel(int[] labelCounts) {
+    return getMostCommonLabel(labelCounts, labelTieOrder);
+  }
+
+  /**
+   * Majority label given the number of rows per label, ties going to the label met first in the
+   * given order.
+   *
+   * @return the position of the label in labels
+   */
+  static int getMostCommonLabel(double[] labelWeights, int[] labelTieOrder) {
+    int mostCommonOutput = -1;
+    double maxWeight = 0;
+    for (int label : labelTieOrder) {
+      if (labelWeights[label] > maxWeight) {
+        maxWeight = labelWeights[label];
+        mostCommonOutput = label;
+      }
+    }
+    return mostCommonOutput;
+  }
+
+  /**
+   * Majority label given the number of rows per label, ties going to the label met first in the
+   * given order.
+   *
+   * @return the position of the label in labels
+   */
+  static int getMostCommonLabel(int[] labelCounts, int[] labelTieOrder) {
+    int mostCommonOutput = -1;
+    int maxCount = 0;
+    for (int label : labelTieOrder) {
+      if (labelCounts[label] > maxCount) {
+        maxCount = labelCounts[label];
+        mostCommonOutput = label;
+      }
+    }
+
+    return mostCommonOutput;
+  }
+
+  /**
+   * Label codes in the iteration order of a HashMap keyed by the labels.
+   */
+  static int[] labelTieOrder(List<String> labels) {
+    Map<String, Integer> codes = new HashMap<String, Integer>();
+    for (int i = 0; i < labels.size(); i++) {
+      codes.putIfAbsent(labels.get(i), i);
+    }
+    int[] order = new int[codes.size()];
+    int i = 0;
+    for (Integer code : codes.values()) {
+      order[i++] = code;
+    }
+    return order;
+  }
+
+  /**
+   * Report the time since the given one to the listener as spent in the phase. Does nothing
+   * without a listener.
+   *
+   * @param rows rows the phase scanned, also reported when positive
+   * @return the time now, or since when there is no listener
+   */
+  private long lap(TrainingListener.Phase phase, long since, int rows) {
+    if (listener == null) {
+      return since;
+    }
+    long now = System.nanoTime();
+    listener.phaseTimed(phase, now - since);
+    if (rows > 0) {
+      listener.rowsScanned(rows);
+    }
+    return now;
+  }
+
+  /**
+   * Give a grown node the label histogram of its rows, and report it to the listener, if any.
+   * Nodes without rows get no histogram.
+   */
+  private DecTreeNodeImpl created(DecTreeNodeImpl node, int depth, int[] labelCounts,
+      double[] labelWeights) {
+    node.labelCounts = labelCounts;
+    node.labelWeights = labelWeights;
+    if (listener != null) {
+      listener.nodeCreated(depth, node.terminal);
+    }
+    return node;
+  }
+
+  /**
+   * Create a node from DataSet codes, filling in the matching String fields used by print().
+   */
+  private DecTreeNodeImpl newNode(int labelCode, int attributeIndex, int parentValueCode,
+      int parentAttributeIndex, boolean terminal) {
+    String attribute = attributeIndex < 0 ? null : attributes.get(attributeIndex);
+    // the children of a numeric split are named once their threshold is set
+    String parentValue = parentValueCode < 0 || numeric != null && numeric[parentAttributeIndex]
+        ? null : attributeValues.get(attributes.get(parentAttributeIndex)).get(parentValueCode);
+    return new DecTreeNodeImpl(labels.get(labelCode), labelCode, attribute, attributeIndex,
+        parentValue, parentValueCode, terminal);
+  }
+
+  /**
+   * Reorder rows in [from, to) so rows sharing a value of the attribute, or a group of values, are
+   * contiguous and in value or group order, keeping their relative order.
+   *
+   * @param groupOf the group of each value, null to keep every value apart
+   * @return bounds such that the rows with value, or group, v are in [bounds[v], bounds[v + 1])
+   */
+  private int[] partition(int from, int to, int attribute, int[] groupOf) {
+    int values = attributeValues.get(attributes.get(attribute)).size();
+    int[] bounds = new int[(groupOf == null ? values : groups(groupOf)) + 1];
+    if (groupOf == null) {
+      groupOf = identitySlots(values);
+    }
+    for (int i = from; i < to; i++) {
+      bounds[groupOf[train.getAttributeCode(rows[i], attribute)] + 1]++;
+    }
+    bounds[0] = from;
+    for (int value = 1; value < bounds.length; value++) {
+      bounds[value] += bounds[value - 1];
+    }
+    int[] next = Arrays.copyOf(bounds, bounds.length - 1);
+    for (int i = from; i < to; i++) {
+      int row = rows[i];
+      scratch[next[groupOf[train.getAttributeCode(row, attribute)]]++] = row;
+    }
+    System.arraycopy(scratch, from, rows, from, to - from);
+    return bounds;
+  }
+
+  /**
+   * Reorder rows in [from, to) so the rows whose value of the numeric attribute is at most the
+   * threshold come first, keeping their relative order. The sorted list of the attribute already
+   * holds them in that order, split at the same point.
+   *
+   * @return bounds such that the rows at or below the threshold are in [bounds[0], bounds[1]) and
+   *         the others in [bounds[1], bounds[2])
+   */
+  private int[] partition(int from, int to, int attribute, float threshold) {
+    float[] column = train.getNumericColumn(attribute);
+    int[] order = sorted[attribute];
+    int cut = from;
+    while (cut < to && column[order[cut]] <= threshold) {
+      cut++;
+    }
+    int[] next = {from, cut};
+    for (int i = from; i < to; i++) {
+      int row = rows[i];
+      scratch[next[column[row] <= threshold ? 0 : 1]++] = row;
+    }
+    System.arraycopy(scratch, from, rows, from, to - from);
+    return new int[] {from, cut, to};
+  }
+
+  /**
+   * Reorder the range [from, to) of every sorted list like partition did the rows, keeping each
+   * child range in value order: one stable pass per list, sending each row to the range of its
+   * child.
+   *
+   * @param groupOf the group of each value as given to partition, null for a numeric split
+   * @param threshold the threshold of a numeric split
+   * @param bounds the child ranges returned by partition
+   */
+  private void partitionSorted(int from, int to, int attribute, int[] groupOf, float threshold,
+      int[] bounds) {
+    float[] column = numeric[attribute] ? train.getNumericColumn(attribute) : null;
+    int[] next = new int[bounds.length - 1];
+    for (int[] order : sorted) {
+      if (order == null) {
+        continue;
+      }
+      System.arraycopy(bounds, 0, next, 0, next.length);
+      for (int i = from; i < to; i++) {
+        int row = order[i];
+        int child;
+        if (column != null) {
+          child = column[row] <= threshold ? 0 : 1;
+        } else {
+          int code = train.getAttributeCode(row, attribute);
+          child = groupOf == null ? code : groupOf[code];
+        }
+        scratch[next[child]++] = row;
+      }
+      System.arraycopy(scratch, from, order, from, to - from);
+    }
+  }
+
+  private static int[] identitySlots(int values) {
+    int[] slot = new int[values];
+    for (int value = 0; value < values; value++) {
+      slot[value] = value;
+    }
+    return slot;
+  }
+
+  /**
+   * Slots of a split merging its empty branches: every value no row takes leads to the first of
+   * them, the others to themselves.
+   */
+  private static int[] mergeEmptySlots(int[] bounds) {
+    int[] slot = identitySlots(bounds.length - 1);
+    int merged = -1;
+    for (int value = 0; value < slot.length; value++) {
+      if (bounds[value] == bounds[value + 1]) {
+        if (merged < 0) {
+          merged = value;
+        }
+        slot[value] = merged;
+      }
+    }
+    return slot;
+  }
+
+  /**
+   * Build a decision tree over the rows in [from, to).
+   * 
+   * @param from first position in rows
+   * @param to position in rows after the last row
+   * @param attributes the attributes still available for a split
+   * @param depth number of splits above the node, 0 for the root
+   * @param labelCounts number of rows per label, null in a weighted build
+   * @param labelWeights weight of the rows per label in a weighted build, null otherwise
+   * @param parentLabel majority label of the parent, -1 for the root
+   * @param parentAttributeIndex the attribute the parent splits on, -1 for the root
+   * @param parentValueCode the code of the value leading here, -1 for the root
+   * @return DecTreeNodeImpl
+   */
+  private DecTreeNodeImpl _buildDecisionTree(int from, int to, BitSet attributes, int depth,
+      int[] labelCounts, double[] labelWeights, int parentLabel, int parentAttributeIndex,
+      int parentValueCode) {
+    long time = 0;
+    if (listener != null) {
+      listener.frontierChanged(frontier.decrementAndGet());
+      time = System.nanoTime();
+    }
+    if (from == to) {
+      DecTreeNodeImpl node = newNode(parentLabel, -1, parentValueCode, parentAttributeIndex, true);
+      return created(node, depth, null, null);
+    }
+    int label;
+    boolean leaf;
+    int maxDepth = options.getMaxDepth();
+    boolean deepest = maxDepth > 0 && depth >= maxDepth;
+    int minRowsToSplit = options.getMinRowsToSplit();
+    if (labelCounts != null) {
+      label = getMostCommonLabel(labelCounts);
+      leaf = labelCounts[label] == to - from || to - from < minRowsToSplit;
+    } else {
+      double totalWeight = sum(labelWeights);
+      if (totalWeight == 0) {
+        // rows of no weight count as no rows
+        DecTreeNodeImpl node = newNode(parentLabel >= 0 ? parentLabel : labelTieOrder[0], -1,
+            parentValueCode, parentAttributeIndex, true);
+        return created(node, depth, null, null);
+      }
+      label = getMostCommonLabel(labelWeights, labelTieOrder);
+      leaf = labelWeights[label] == totalWeight || totalWeight < minRowsToSplit;
+    }
+    time = lap(TrainingListener.Phase.MAJORITY, time, 0);
+    if (leaf || attributes.isEmpty() || deepest) {
+      DecTreeNodeImpl node = newNode(label, -1, parentValueCode, parentAttributeIndex, true);
+      return created(node, depth, labelCounts, labelWeights);
+    } else {
+      // one scan counts every candidate, and the counts of the chosen one are the histograms of
+      // the children
+      int[] candidates = candidates(from, to, attributes);
+      int bestAttribute = -1;
+      double gain = 0;
+      int[][] childCounts = null;
+      double[][] childWeights = null;
+      // groupOf[attribute][value] is the child of each value when values are grouped
+      int[][] groupOf = null;
+      // whether each group of the chosen attribute takes several values of the rows
+      boolean[] severalValues = null;
+      boolean gainRatio = options.getCriterion() == TreeOptions.Criterion.GAIN_RATIO;
+      // a numeric candidate is scored on its best threshold, whose two sides give its counts
+      int[] discrete = discreteCandidates(candidates);
+      float[] thresholds = discrete != candidates ? new float[this.attributes.size()] : null;
+      if (labelCounts != null) {
+        int[][][] counts = countAttributeValueLabels(from, to, discrete);
+        if (thresholds != null) {
+          candidates = sweepThresholds(from, to, candidates, labelCounts, counts, thresholds);
+        }
+        time = listener != null ? System.nanoTime() : 0;
+        // by value, as grouping replaces the counts
+        int[][][] valueCounts = options.getMaxBranches() > 0 ? counts.clone() : null;
+        if (options.getMaxBranches() > 0) {
+          groupOf = groupValues(counts, discrete, label);
+        }
+        candidates = leafSizeCandidates(counts, candidates);
+        if (candidates.length > 0) {
+          bestAttribute = gainRatio
+              ? findMaxGainRatioAttribute(counts, candidates, labelCounts, to - from,
+                  this.attributes)
+              : findMaxImporantAttribute(counts, candidates, labelCounts, to - from,
+                  this.attributes);
+          gain = infoGain(counts[bestAttribute], calculateClassEntropy(labelCounts, to - from),
+              to - from);
+          childCounts = counts[bestAttribute];
+          if (groupOf != null && groupOf[bestAttribute] != null) {
+            severalValues = severalValues(valueCounts[bestAttribute], groupOf[bestAttribute]);
+          }
+        }
+      } else {
+        double[][][] counts = weighAttributeValueLabels(from, to, discrete);
+        if (thresholds != null) {
+          candidates = sweepThresholds(from, to, candidates, labelWeights, counts, thresholds);
+        }
+        time = listener != null ? System.nanoTime() : 0;
+        // by value, as grouping replaces the counts
+        double[][][] valueWeights = options.getMaxBranches() > 0 ? counts.clone() : null;
+        if (options.getMaxBranches() > 0) {
+          groupOf = groupValues(counts, discrete, label);
+        }
+        candidates = leafSizeCandidates(counts, candidates);
+        if (candidates.length > 0) {
+          bestAttribute = gainRatio
+              ? findMaxGainRatioAttribute(counts, candidates, labelWeights, this.attributes)
+              : findMaxImporantAttribute(counts, candidates, labelWeights, this.attributes);
+          double totalWeight = sum(labelWeights);
+          gain = infoGain(counts[bestAttribute], calculateClassEntropy(labelWeights, totalWeight),
+              totalWeight);
+          childWeights = counts[bestAttribute];
+          if (groupOf != null && groupOf[bestAttribute] != null) {
+            severalValues = severalValues(valueWeights[bestAttribute], groupOf[bestAttribute]);
+          }
+        }
+      }
+      if (listener != null) {
+        lap(TrainingListener.Phase.SCORE, time, 0);
+        listener.splitsEvaluated(candidates.length);
+      }
+      double minGain = options.getMinGain();
+      if (bestAttribute < 0 || (minGain > 0 && gain < minGain)) {
+        DecTreeNodeImpl node = newNode(label, -1, parentValueCode, parentAttributeIndex, true);
+        return created(node, depth, labelCounts, labelWeights);
+      }
+      if (listener != null) {
+        time = System.nanoTime();
+      }
+      // slot[value] is the range of bounds, and so the child, the value leads to: its group when
+      // grouping values, otherwise the value itself, or the first empty value for a merged one
+      int[] slot = groupOf == null ? null : groupOf[bestAttribute];
+      // a numeric split has two children, the rows at or below the threshold and the others
+      boolean numericSplit = thresholds != null && numeric[bestAttribute];
+      float threshold = numericSplit ? thresholds[bestAttribute] : Float.NaN;
+      int[] bounds = numericSplit ? partition(from, to, bestAttribute, threshold)
+          : partition(from, to, bestAttribute, slot);
+      if (sorted != null) {
+        partitionSorted(from, to, bestAttribute, slot, threshold, bounds);
+      }
+      if (listener != null) {
+        lap(TrainingListener.Phase.PARTITION, time, 0);
+      }
+      int values = numericSplit ? 2
+          : attributeValues.get(this.attributes.get(bestAttribute)).size();
+      if (slot == null) {
+        slot = options.isMergeEmptyBranches() ? mergeEmptySlots(bounds) : identitySlots(values);
+      }
+      // the lowest value of each slot grows its child, -1 for a slot no value leads to
+      int[] firstValue = new int[bounds.length - 1];
+      Arrays.fill(firstValue, -1);
+      int childNodes = 0;
+      for (int value = 0; value < values; value++) {
+        if (firstValue[slot[value]] < 0) {
+          firstValue[slot[value]] = value;
+          childNodes++;
+        }
+      }
+      int maxNodes = options.getMaxNodes();
+      if (maxNodes > 0) {
+        if (nodes + childNodes > maxNodes) {
+          DecTreeNodeImpl node = newNode(label, -1, parentValueCode, parentAttributeIndex, true);
+          return created(node, depth, labelCounts, labelWeights);
+        }
+        nodes += childNodes;
+      }
+      DecTreeNodeImpl node = newNode(label, bestAttribute, parentValueCode, parentAttributeIndex,
+          false);
+      node.gain = gain;
+      node.threshold = threshold;
+      created(node, depth, labelCounts, labelWeights);
+      if (listener != null) {
+        listener.frontierChanged(frontier.addAndGet(childNodes));
+      }
+      // a numeric attribute stays available below its split, for thresholds within either side;
+      // each side has fewer rows than the node, so growth still ends
+      BitSet newAttributes = attributes;
+      if (!numericSplit) {
+        newAttributes = (BitSet) attributes.clone();
+        newAttributes.clear(bestAttribute);
+      }
+      // a child of a grouped split taking several of the values of the node's rows may split on
+      // the attribute again, to tell those values apart; its rows are fewer, so growth still ends
+      BitSet[] childAttributes = new BitSet[bounds.length - 1];
+      Arrays.fill(childAttributes, newAttributes);
+      if (severalValues != null) {
+        for (int g = 0; g < childAttributes.length; g++) {
+          if (severalValues[g]) {
+            childAttributes[g] = attributes;
+          }
+        }
+      }
+      if (pool != null && to - from >= options.getParallelSubtreeRows()) {
+        SubtreeTask[] tasks = new SubtreeTask[bounds.length - 1];
+        List<SubtreeTask> grown = new ArrayList<SubtreeTask>(childNodes);
+        for (int s = 0; s < tasks.length; s++) {
+          if (firstValue[s] >= 0) {
+            tasks[s] = new SubtreeTask(bounds[s], bounds[s + 1], childAttributes[s], depth + 1,
+                childCounts == null ? null : childCounts[s],
+                childWeights == null ? null : childWeights[s], label, bestAttribute,
+                firstValue[s]);
+            grown.add(tasks[s]);
+          }
+        }
+        ForkJoinTask.invokeAll(grown);
+        // children are added in value order whatever order the tasks finish in
+        for (int value = 0; value < values; value++) {
+          node.addChild(tasks[slot[value]].join());
+        }
+      } else {
+        DecTreeNodeImpl[] children = new DecTreeNodeImpl[bounds.length - 1];
+        for (int value = 0; value < values; value++) {
+          int s = slot[value];
+          if (children[s] == null) {
+            children[s] = _buildDecisionTree(bounds[s], bounds[s + 1], childAttributes[s],
+                depth + 1, childCounts == null ? null : childCounts[s],
+                childWeights == null ? null : childWeights[s], label, bestAttribute, value);
+          }
+          node.addChild(children[s]);
+        }
+      }
+      if (numericSplit) {
+        for (int side = 0; side < 2; side++) {
+          node.getChild(side).parentAttributeValue = DecTreeNodeImpl.branchName(side, threshold);
         }
-        List<String> newAttributes = new ArrayList<String>(attributes);
-        newAttributes.remove(bestAttribute);
-        DecTreeNode child = _buildDecisionTree(examplesWithAttributeValue, newAttributes, examples, value);
-        child.parentAttributeValue = value;
-        node.addChild(child);
       }
       return node;
     }
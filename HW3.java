@@ -1,5 +1,6 @@
-import java.io.BufferedReader;
-import java.io.FileReader;
+import java.io.BufferedWriter;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
 
 /**
  * Do not modify.
@@ -85,9 +86,11 @@ public class HW3 {
     if (mode == 1 || mode == 4) {
       tree.print();
     } else if(mode == 2 || mode == 5){
-      for (Instance instance : testSet.instances) {
-        System.out.println(tree.classify(instance));
+      PrintWriter out = new PrintWriter(new BufferedWriter(new OutputStreamWriter(System.out)));
+      for (int classification : tree.classifyAll(testSet)) {
+        out.println(testSet.labels.get(classification));
       }
+      out.flush();
     }
   
   }
@@ -95,31 +98,19 @@ public class HW3 {
   /**
    * Converts from text file format to DataSet format. From the homework spec: All data files
    * (training, tuning, test) will contain a list of classes and attribute values, followed by the
-   * actual data. Attributes and classes are always discretely valued. A line that begins with a
-   * double slash // is a comment and should be ignored. In other lines, elements will be
-   * comma-separated. For a line beginning with %%, it contains two possible classes. Each line that
-   * begins with ## specifies the name and all possible discrete values of one attribute. The order
-   * of successive attributes is important as this is the same order used in each of the examples in
-   * the file.
+   * actual data. Classes are always discretely valued, and attributes are too unless declared
+   * numeric. A line that begins with a double slash // is a comment and should be ignored. In other
+   * lines, elements will be comma-separated. For a line beginning with %%, it contains two possible
+   * classes. Each line that begins with ## specifies the name and all possible discrete values of
+   * one attribute, or the name followed by the single word numeric for an attribute taking real
+   * values. That word is reserved as a sole value: a discrete attribute can list numeric among
+   * other values, but not as its only one. The order of successive attributes is important as this
+   * is the same order used in each of the examples in the file.
    */
   private static DataSet createDataSet(String file) {
-    DataSet set = new DataSet();
-    BufferedReader in;
+    DataSet set = null;
     try {
-      in = new BufferedReader(new FileReader(file));
-      while (in.ready()) {
-        String line = in.readLine();
-        String prefix = line.substring(0, 2);
-        if (prefix.equals("//")) {
-        } else if (prefix.equals("%%")) {
-          set.addLabels(line);
-        } else if (prefix.equals("##")) {
-          set.addAttribute(line);
-        } else {
-          set.addInstance(line);
-        }
-      }
-      in.close();
+      set = new DataSetLoader().load(file);
     } catch (Exception e) {
       e.printStackTrace();
       System.exit(-1);
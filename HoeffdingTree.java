@@ -0,0 +1,333 @@
+import java.util.Arrays;
+
+/**
+ * Decision tree learned from an unbounded stream of instances (a Hoeffding tree, Domingos and
+ * Hulten's VFDT). Each leaf keeps the count tensor counts[attribute][value][label] of the instances
+ * reaching it since it was created. Every gracePeriod instances the leaf scores its attributes
+ * with the information gain of DecisionTreeImpl, and splits once the Hoeffding bound shows that
+ * with probability 1 - delta the best attribute on the seen instances is also the best on the
+ * whole stream, or once the two best attributes are too close for it to matter. Memory is constant
+ * per leaf and learning an instance takes one walk down the tree plus one count per attribute.
+ * Numeric attributes are not supported.
+ *
+ * learn is synchronized, so several threads may learn from the stream, one instance at a time,
+ * while any number of threads classify. A split builds the new node and its leaves completely
+ * before publishing them through a volatile write, so a classifying thread sees either the leaf or
+ * the whole split, and never waits. snapshot copies the leaf statistics under the same lock.
+ */
+public class HoeffdingTree extends DecisionTree {
+  private static final int RESCALE_ROWS = 1 << 30; // leaf rows at which its counts are halved
+
+  private final DataSet meta; // labels, attributes and attribute values of the stream
+  private final int[] arity; // number of values of each attribute
+  private final int[] labelTieOrder;
+  private double delta = 1e-7; // allowed probability of choosing the wrong attribute
+  private double tieThreshold = 0.05; // bound under which the best attribute is taken anyway
+  private int gracePeriod = 200; // instances a leaf sees between two split checks
+  private volatile Node root;
+  private int leaves = 1;
+
+  /**
+   * A node of the tree. The statistics of a leaf are only read under the lock of the tree, by
+   * learn and snapshot; classifying threads only read the final attribute, the volatile children
+   * and the volatile label.
+   */
+  private static class Node {
+    final int attributeIndex; // split attribute, -1 for a leaf
+    volatile Node[] children; // by value code, replaced as a whole when a child splits
+    volatile int labelCode;
+    // leaf statistics
+    final int[] candidates; // attributes still available for a split
+    final int[][][] counts; // counts[attribute][value][label] of the candidates
+    final int[] labelCounts;
+    int rows;
+    int rowsAtLastCheck;
+
+    Node(int attributeIndex, Node[] children, int labelCode) {
+      this.attributeIndex = attributeIndex;
+      this.children = children;
+      this.labelCode = labelCode;
+      this.candidates = null;
+      this.counts = null;
+      this.labelCounts = null;
+    }
+
+    Node(int labelCode, int[] candidates, int[] arity, int labelCount) {
+      this.attributeIndex = -1;
+      this.labelCode = labelCode;
+      this.candidates = candidates;
+      this.counts = new int[arity.length][][];
+      for (int attribute : candidates) {
+        counts[attribute] = new int[arity[attribute]][labelCount];
+      }
+      this.labelCounts = new int[labelCount];
+    }
+  }
+
+  /**
+   * Start an empty tree for instances with the meta-values of the given DataSet.
+   *
+   * @param meta: a DataSet holding the labels, attributes and attribute values of the stream
+   */
+  public HoeffdingTree(DataSet meta) {
+    if (meta.hasNumericAttributes()) {
+      throw new IllegalArgumentException("numeric attributes are not supported");
+    }
+    this.meta = meta.emptyCopy();
+    this.arity = new int[meta.attributes.size()];
+    int[] candidates = new int[arity.length];
+    for (int i = 0; i < arity.length; i++) {
+      arity[i] = meta.attributeValues.get(meta.attributes.get(i)).size();
+      candidates[i] = i;
+    }
+    this.labelTieOrder = DecisionTreeImpl.labelTieOrder(meta.labels);
+    this.root = new Node(labelTieOrder[0], candidates, arity, meta.labels.size());
+  }
+
+  /**
+   * Probability, 1e-7 by default, that a split picks an attribute that is not the best on the
+   * whole stream.
+   */
+  public HoeffdingTree setDelta(double delta) {
+    if (!(delta > 0 && delta < 1)) {
+      throw new IllegalArgumentException("delta must be between 0 and 1: " + delta);
+    }
+    this.delta = delta;
+    return this;
+  }
+
+  /**
+   * Hoeffding bound, 0.05 by default, under which a leaf splits on its best attribute even if the
+   * runner-up is as good.
+   */
+  public HoeffdingTree setTieThreshold(double tieThreshold) {
+    if (!(tieThreshold >= 0 && Double.isFinite(tieThreshold))) {
+      throw new IllegalArgumentException("tieThreshold must be a finite value of at least 0: "
+          + tieThreshold);
+    }
+    this.tieThreshold = tieThreshold;
+    return this;
+  }
+
+  /**
+   * Instances, 200 by default, a leaf sees between two checks for a split.
+   */
+  public HoeffdingTree setGracePeriod(int gracePeriod) {
+    if (gracePeriod < 1) {
+      throw new IllegalArgumentException("gracePeriod must be at least 1: " + gracePeriod);
+    }
+    this.gracePeriod = gracePeriod;
+    return this;
+  }
+
+  /**
+   * Number of leaves of the tree.
+   */
+  public synchronized int getLeafCount() {
+    return leaves;
+  }
+
+  /**
+   * Learn from one labeled instance of a DataSet sharing the meta-values of the stream.
+   */
+  public synchronized void learn(Instance instance) {
+    int label = instance.getLabelCode();
+    Node parent = null;
+    int value = -1;
+    Node node = root;
+    while (node.attributeIndex >= 0) {
+      parent = node;
+      value = instance.getAttributeCode(node.attributeIndex);
+      node = node.children[value];
+    }
+
+    if (node.rows == RESCALE_ROWS) {
+      rescale(node);
+    }
+    node.rows++;
+    node.labelCounts[label]++;
+    for (int attribute : node.candidates) {
+      node.counts[attribute][instance.getAttributeCode(attribute)][label]++;
+    }
+    int majority = DecisionTreeImpl.getMostCommonLabel(node.labelCounts, labelTieOrder);
+    if (majority != node.labelCode) {
+      node.labelCode = majority;
+    }
+
+    if (node.rows - node.rowsAtLastCheck >= gracePeriod && node.candidates.length > 0
+        && node.labelCounts[node.labelCode] < node.rows) {
+      node.rowsAtLastCheck = node.rows;
+      int best = bestSplit(node);
+      if (best >= 0) {
+        split(node, best, parent, value);
+      }
+    }
+  }
+
+  /**
+   * Halve the counts of a leaf, keeping them within int range on an endless stream.
+   */
+  private static void rescale(Node node) {
+    node.rows = 0;
+    for (int label = 0; label < node.labelCounts.length; label++) {
+      node.labelCounts[label] >>= 1;
+      node.rows += node.labelCounts[label];
+    }
+    for (int attribute : node.candidates) {
+      for (int[] labelCounts : node.counts[attribute]) {
+        for (int label = 0; label < labelCounts.length; label++) {
+          labelCounts[label] >>= 1;
+        }
+      }
+    }
+    node.rowsAtLastCheck = node.rows;
+  }
+
+  /**
+   * The attribute the leaf should split on now, or -1 when the Hoeffding bound does not allow a
+   * split yet.
+   */
+  private int bestSplit(Node node) {
+    double classEntropy = DecisionTreeImpl.calculateClassEntropy(node.labelCounts, node.rows);
+    int best = -1;
+    double bestGain = 0;
+    double secondGain = 0;
+    for (int attribute : node.candidates) {
+      double gain = DecisionTreeImpl.infoGain(node.counts[attribute], classEntropy, node.rows);
+      if (best < 0 || gain > bestGain) {
+        secondGain = best < 0 ? 0 : bestGain;
+        bestGain = gain;
+        best = attribute;
+      } else if (gain > secondGain) {
+        secondGain = gain;
+      }
+    }
+    if (bestGain <= 0) {
+      return -1;
+    }
+    // information gain ranges over log2(number of labels)
+    double range = Math.log(meta.labels.size()) / Math.log(2);
+    double bound = Math.sqrt(range * range * Math.log(1 / delta) / (2.0 * node.rows));
+    if (node.candidates.length == 1) {
+      // the alternative is not splitting, whose gain is 0
+      secondGain = 0;
+    }
+    return bestGain - secondGain > bound || bound < tieThreshold ? best : -1;
+  }
+
+  /**
+   * Replace the leaf by a node splitting on the attribute, with one new leaf per value predicting
+   * the majority label of the instances the leaf saw with that value.
+   */
+  private void split(Node leaf, int attribute, Node parent, int value) {
+    int[] candidates = new int[leaf.candidates.length - 1];
+    int next = 0;
+    for (int candidate : leaf.candidates) {
+      if (candidate != attribute) {
+        candidates[next++] = candidate;
+      }
+    }
+    Node[] children = new Node[arity[attribute]];
+    for (int v = 0; v < children.length; v++) {
+      int[] labelCounts = leaf.counts[attribute][v];
+      int label = leaf.labelCode;
+      if (Arrays.stream(labelCounts).anyMatch(count -> count > 0)) {
+        label = DecisionTreeImpl.getMostCommonLabel(labelCounts, labelTieOrder);
+      }
+      children[v] = new Node(label, candidates, arity, meta.labels.size());
+    }
+    Node node = new Node(attribute, children, leaf.labelCode);
+    if (parent == null) {
+      root = node;
+    } else {
+      Node[] siblings = parent.children.clone();
+      siblings[value] = node;
+      parent.children = siblings;
+    }
+    leaves += children.length - 1;
+  }
+
+  /**
+   * Classify an instance of a DataSet sharing the meta-values of the stream. Safe to call from
+   * any thread, including while learn runs.
+   *
+   * @return the position of the predicted label in labels
+   */
+  public int classifyCode(Instance instance) {
+    Node node = root;
+    while (node.attributeIndex >= 0) {
+      node = node.children[instance.getAttributeCode(node.attributeIndex)];
+    }
+    return node.labelCode;
+  }
+
+  @Override
+  public String classify(Instance instance) {
+    return meta.labels.get(classifyCode(instance));
+  }
+
+  @Override
+  public int[] classifyAll(DataSet set) {
+    int[] classifications = new int[set.size()];
+    for (int row = 0; row < classifications.length; row++) {
+      classifications[row] = classifyCode(set.getInstance(row));
+    }
+    return classifications;
+  }
+
+  /**
+   * The tree as it stands, as a DecisionTreeImpl that no longer changes.
+   */
+  public DecisionTreeImpl snapshot() {
+    DecTreeNodeImpl tree;
+    // copied under the learn lock, so no histogram is caught halfway through an update
+    synchronized (this) {
+      tree = toTreeNode(root, -1, -1);
+    }
+    return new DecisionTreeImpl(meta, tree);
+  }
+
+  private DecTreeNodeImpl toTreeNode(Node node, int parentAttributeIndex, int parentValueCode) {
+    String parentValue = parentValueCode < 0 ? null
+        : meta.attributeValues.get(meta.attributes.get(parentAttributeIndex)).get(parentValueCode);
+    boolean terminal = node.attributeIndex < 0;
+    int labelCode = node.labelCode;
+    DecTreeNodeImpl treeNode = new DecTreeNodeImpl(meta.labels.get(labelCode), labelCode,
+        terminal ? null : meta.attributes.get(node.attributeIndex), node.attributeIndex,
+        parentValue, parentValueCode, terminal);
+    // only leaves keep counts; copied, as learning goes on changing them
+    int[] labelCounts = node.labelCounts;
+    if (labelCounts != null && node.rows > 0) {
+      treeNode.labelCounts = labelCounts.clone();
+    }
+    if (!terminal) {
+      Node[] children = node.children;
+      for (int value = 0; value < children.length; value++) {
+        treeNode.addChild(toTreeNode(children[value], node.attributeIndex, value));
+      }
+    }
+    return treeNode;
+  }
+
+  @Override
+  public void print() {
+    snapshot().print();
+  }
+
+  @Override
+  public void rootInfoGain(DataSet train) {
+    new DecisionTreeImpl().rootInfoGain(train);
+  }
+
+  @Override
+  public void printAccuracy(DataSet test) {
+    int[] classifications = classifyAll(test);
+    int correct = 0;
+    for (int i = 0; i < classifications.length; i++) {
+      if (classifications[i] == test.getLabelCode(i)) {
+        correct++;
+      }
+    }
+    System.out.format("%.5f\n", (double) correct / classifications.length);
+  }
+}
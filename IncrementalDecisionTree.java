@@ -0,0 +1,301 @@
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+
+/**
+ * Decision tree that absorbs new training rows without a full rebuild, and is always the tree
+ * DecisionTreeImpl would grow from every row seen so far.
+ *
+ * Each internal node keeps the sufficient statistics of its split: the number of rows per label
+ * and the count tensor counts[attribute][value][label] of its candidate attributes. Each leaf keeps
+ * the rows reaching it. A new row updates the counts along its path and joins the leaf it reaches.
+ * The touched nodes are then checked top-down: while a node keeps its best attribute its children
+ * get the same rows as before plus the new ones, so only the touched children need checking. Only
+ * a node whose best attribute changed, or a leaf that is no longer pure, is regrown from its rows.
+ * Numeric attributes are not supported.
+ */
+public class IncrementalDecisionTree extends DecisionTree {
+  private final DataSet data; // every row seen so far
+  private final int[] arity; // number of values of each attribute
+  private final int[] labelTieOrder;
+  private Node root;
+  private DecisionTreeImpl tree; // snapshot of root used to classify and print
+  private long regrownRows; // rows counted again by regrown subtrees, over all updates
+
+  /**
+   * A node of the tree together with the statistics of the rows reaching it.
+   */
+  private static class Node {
+    int labelCode;
+    int attributeIndex = -1; // split attribute, -1 for a leaf
+    BitSet candidates; // attributes still available for a split
+    int[] labelCounts;
+    int rows;
+    int[][][] counts; // counts[attribute][value][label] of the candidates, internal nodes only
+    Node[] children; // by value code, internal nodes only
+    int[] leafRows = new int[0]; // rows reaching a leaf, in leafRows[0, rows)
+    boolean touched; // reached by a row of the current update
+  }
+
+  /**
+   * Grow a tree over the rows of the training set.
+   *
+   * @param train: the initial training set
+   */
+  IncrementalDecisionTree(DataSet train) {
+    if (train.hasNumericAttributes()) {
+      throw new IllegalArgumentException("numeric attributes are not supported");
+    }
+    this.data = train.emptyCopy();
+    this.data.appendAll(Collections.singletonList(train));
+    this.arity = new int[train.attributes.size()];
+    for (int i = 0; i < arity.length; i++) {
+      arity[i] = train.attributeValues.get(train.attributes.get(i)).size();
+    }
+    this.labelTieOrder = DecisionTreeImpl.labelTieOrder(train.labels);
+
+    BitSet allAttributes = new BitSet(arity.length);
+    allAttributes.set(0, arity.length);
+    int[] rows = new int[data.size()];
+    for (int i = 0; i < rows.length; i++) {
+      rows[i] = i;
+    }
+    root = grow(rows, 0, rows.length, new int[rows.length], allAttributes, -1);
+    tree = new DecisionTreeImpl(data, toTreeNode(root, -1, -1));
+  }
+
+  /**
+   * Absorb the rows of a DataSet sharing the training meta-values.
+   *
+   * @param batch: the new labeled rows
+   */
+  public void update(DataSet batch) {
+    if (!data.sameMetaValues(batch)) {
+      throw new IllegalArgumentException("bad meta-values in update");
+    }
+    int first = data.size();
+    data.appendAll(Collections.singletonList(batch));
+    for (int row = first; row < data.size(); row++) {
+      absorb(row);
+    }
+    root = refresh(root, -1);
+    tree = new DecisionTreeImpl(data, toTreeNode(root, -1, -1));
+  }
+
+  /**
+   * The tree grown from every row seen so far. It is replaced, not changed, by update.
+   */
+  public DecisionTreeImpl getTree() {
+    return tree;
+  }
+
+  /**
+   * Number of rows seen so far.
+   */
+  public int size() {
+    return data.size();
+  }
+
+  /**
+   * Rows counted again by regrown subtrees over all updates, a measure of their cost next to a
+   * full rebuild, which counts every row at every level.
+   */
+  public long getRegrownRows() {
+    return regrownRows;
+  }
+
+  /**
+   * Add a row to the counts along its path and to the leaf it reaches.
+   */
+  private void absorb(int row) {
+    int label = data.getLabelCode(row);
+    Node node = root;
+    while (true) {
+      node.touched = true;
+      node.labelCounts[label]++;
+      node.rows++;
+      if (node.attributeIndex < 0) {
+        if (node.rows > node.leafRows.length) {
+          node.leafRows = Arrays.copyOf(node.leafRows, Math.max(8, node.rows + (node.rows >> 1)));
+        }
+        node.leafRows[node.rows - 1] = row;
+        return;
+      }
+      for (int attribute = node.candidates.nextSetBit(0); attribute >= 0;
+          attribute = node.candidates.nextSetBit(attribute + 1)) {
+        node.counts[attribute][data.getAttributeCode(row, attribute)][label]++;
+      }
+      node = node.children[data.getAttributeCode(row, node.attributeIndex)];
+    }
+  }
+
+  /**
+   * Bring a node in line with its counts after an update.
+   *
+   * @param parentLabel majority label of the parent, -1 for the root
+   * @return the node, or the subtree regrown in its place
+   */
+  private Node refresh(Node node, int parentLabel) {
+    if (!node.touched) {
+      // no new rows: only an empty leaf depends on anything outside the node
+      if (node.rows == 0) {
+        node.labelCode = parentLabel;
+      }
+      return node;
+    }
+    node.touched = false;
+    node.labelCode = DecisionTreeImpl.getMostCommonLabel(node.labelCounts, labelTieOrder);
+    boolean pure = node.labelCounts[node.labelCode] == node.rows;
+    if (node.attributeIndex < 0) {
+      if (pure || node.candidates.isEmpty()) {
+        return node;
+      }
+      return regrow(node, parentLabel);
+    }
+    int best = DecisionTreeImpl.findMaxImporantAttribute(node.counts,
+        node.candidates.stream().toArray(), node.labelCounts, node.rows, data.attributes);
+    if (best != node.attributeIndex) {
+      return regrow(node, parentLabel);
+    }
+    for (int value = 0; value < node.children.length; value++) {
+      node.children[value] = refresh(node.children[value], node.labelCode);
+    }
+    return node;
+  }
+
+  /**
+   * Grow the subtree of the node again from the rows reaching it.
+   */
+  private Node regrow(Node node, int parentLabel) {
+    int[] rows = new int[node.rows];
+    int[] next = {0};
+    collectRows(node, rows, next);
+    regrownRows += rows.length;
+    return grow(rows, 0, rows.length, new int[rows.length], node.candidates, parentLabel);
+  }
+
+  private static void collectRows(Node node, int[] rows, int[] next) {
+    if (node.attributeIndex < 0) {
+      System.arraycopy(node.leafRows, 0, rows, next[0], node.rows);
+      next[0] += node.rows;
+    } else {
+      for (Node child : node.children) {
+        collectRows(child, rows, next);
+      }
+    }
+  }
+
+  /**
+   * Grow a subtree over rows[from, to) as _buildDecisionTree does, keeping the statistics of
+   * every node.
+   */
+  private Node grow(int[] rows, int from, int to, int[] scratch, BitSet candidates,
+      int parentLabel) {
+    Node node = new Node();
+    node.candidates = candidates;
+    node.labelCounts = new int[data.labels.size()];
+    node.rows = to - from;
+    for (int i = from; i < to; i++) {
+      node.labelCounts[data.getLabelCode(rows[i])]++;
+    }
+    if (from == to) {
+      node.labelCode = parentLabel;
+      return node;
+    }
+    node.labelCode = DecisionTreeImpl.getMostCommonLabel(node.labelCounts, labelTieOrder);
+    if (node.labelCounts[node.labelCode] == node.rows || candidates.isEmpty()) {
+      node.leafRows = Arrays.copyOfRange(rows, from, to);
+      return node;
+    }
+
+    int[] attributes = candidates.stream().toArray();
+    node.counts = new int[arity.length][][];
+    for (int attribute : attributes) {
+      node.counts[attribute] = new int[arity[attribute]][data.labels.size()];
+    }
+    for (int i = from; i < to; i++) {
+      int row = rows[i];
+      int label = data.getLabelCode(row);
+      for (int attribute : attributes) {
+        node.counts[attribute][data.getAttributeCode(row, attribute)][label]++;
+      }
+    }
+    int best = DecisionTreeImpl.findMaxImporantAttribute(node.counts, attributes,
+        node.labelCounts, node.rows, data.attributes);
+    node.attributeIndex = best;
+    node.leafRows = null;
+
+    // counting sort of the rows by their value of the split attribute
+    int[] bounds = new int[arity[best] + 1];
+    for (int value = 0; value < arity[best]; value++) {
+      bounds[value + 1] = bounds[value] + sum(node.counts[best][value]);
+    }
+    int[] position = Arrays.copyOf(bounds, arity[best]);
+    for (int i = from; i < to; i++) {
+      scratch[from + position[data.getAttributeCode(rows[i], best)]++] = rows[i];
+    }
+    System.arraycopy(scratch, from, rows, from, to - from);
+
+    BitSet childCandidates = (BitSet) candidates.clone();
+    childCandidates.clear(best);
+    node.children = new Node[arity[best]];
+    for (int value = 0; value < arity[best]; value++) {
+      node.children[value] = grow(rows, from + bounds[value], from + bounds[value + 1], scratch,
+          childCandidates, node.labelCode);
+    }
+    return node;
+  }
+
+  private static int sum(int[] counts) {
+    int sum = 0;
+    for (int count : counts) {
+      sum += count;
+    }
+    return sum;
+  }
+
+  /**
+   * Turn a node into DecTreeNodeImpl nodes, filling in their String fields.
+   */
+  private DecTreeNodeImpl toTreeNode(Node node, int parentAttributeIndex, int parentValueCode) {
+    String parentValue = parentValueCode < 0 ? null
+        : data.attributeValues.get(data.attributes.get(parentAttributeIndex)).get(parentValueCode);
+    boolean terminal = node.attributeIndex < 0;
+    DecTreeNodeImpl treeNode = new DecTreeNodeImpl(data.labels.get(node.labelCode),
+        node.labelCode, terminal ? null : data.attributes.get(node.attributeIndex),
+        node.attributeIndex, parentValue, parentValueCode, terminal);
+    // copied, as later updates change the counts of the node
+    treeNode.labelCounts = node.rows > 0 ? node.labelCounts.clone() : null;
+    if (!terminal) {
+      for (int value = 0; value < node.children.length; value++) {
+        treeNode.addChild(toTreeNode(node.children[value], node.attributeIndex, value));
+      }
+    }
+    return treeNode;
+  }
+
+  @Override
+  public String classify(Instance instance) {
+    return tree.classify(instance);
+  }
+
+  @Override
+  public int[] classifyAll(DataSet set) {
+    return tree.classifyAll(set);
+  }
+
+  @Override
+  public void print() {
+    tree.print();
+  }
+
+  @Override
+  public void rootInfoGain(DataSet train) {
+    new DecisionTreeImpl().rootInfoGain(train);
+  }
+
+  @Override
+  public void printAccuracy(DataSet test) {
+    tree.printAccuracy(test);
+  }
+}
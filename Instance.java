@@ -1,21 +1,61 @@
-import java.util.ArrayList;
-import java.util.List;
-
 /**
  * Holds data for particular instance. Integer values refer to offsets in meta-data arrays of a
- * surrounding DataSet.
+ * surrounding DataSet. An Instance is only a view of one row of the DataSet columns, so creating
+ * one is cheap and it carries no copy of the values.
  */
 public class Instance {
-  public String label;
-  public List<String> attributes = null;
+  private final DataSet dataSet;
+  private final int row;
+
+  Instance(DataSet dataSet, int row) {
+    this.dataSet = dataSet;
+    this.row = row;
+  }
+
+  /**
+   * The DataSet this instance is a row of.
+   */
+  public DataSet getDataSet() {
+    return dataSet;
+  }
+
+  /**
+   * Position of this instance in its DataSet.
+   */
+  public int getRow() {
+    return row;
+  }
 
   /**
-   * Add attribute values in the order of attributes as specified by the dataset
+   * Code of the label, i.e. its position in the DataSet labels list.
    */
-  public void addAttribute(String i) {
-    if (attributes == null) {
-      attributes = new ArrayList<String>();
+  public int getLabelCode() {
+    return dataSet.getLabelCode(row);
+  }
+
+  public String getLabel() {
+    return dataSet.labels.get(getLabelCode());
+  }
+
+  /**
+   * Code of the value of the given attribute, i.e. its position in attributeValues[<attribute>].
+   */
+  public int getAttributeCode(int attribute) {
+    return dataSet.getAttributeCode(row, attribute);
+  }
+
+  /**
+   * Value of the given numeric attribute.
+   */
+  public float getNumericValue(int attribute) {
+    return dataSet.getNumericValue(row, attribute);
+  }
+
+  public String getAttribute(int attribute) {
+    if (dataSet.isNumeric(attribute)) {
+      return Float.toString(getNumericValue(attribute));
     }
-    attributes.add(i);
+    return dataSet.attributeValues.get(dataSet.attributes.get(attribute))
+        .get(getAttributeCode(attribute));
   }
 }
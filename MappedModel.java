@@ -0,0 +1,133 @@
+import java.nio.IntBuffer;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A tree classifying straight from a memory-mapped model file, see ModelFile. The node arrays are
+ * read in place from the mapping and only the dictionaries are copied to the heap, so loading costs
+ * little more than mapping the file.
+ */
+public final class MappedModel {
+  private final List<String> labels;
+  private final List<String> attributes;
+  private final Map<String, List<String>> attributeValues;
+  // splitAttribute, childOffset and labelCode of CompiledTree, nodeCount ints each, then children,
+  // then the bits of threshold
+  private final IntBuffer nodes;
+  private final int nodeCount;
+  private final int childCount;
+  private final int thresholdBase; // position of threshold in nodes, -1 when the file has none
+  private final int[] valueCounts; // number of values per attribute
+
+  MappedModel(List<String> labels, List<String> attributes,
+      Map<String, List<String>> attributeValues, IntBuffer nodes, int nodeCount, int childCount,
+      boolean thresholds) {
+    this.labels = labels;
+    this.attributes = attributes;
+    this.attributeValues = attributeValues;
+    this.nodes = nodes;
+    this.nodeCount = nodeCount;
+    this.childCount = childCount;
+    this.thresholdBase = thresholds ? 3 * nodeCount + childCount : -1;
+    this.valueCounts = new int[attributes.size()];
+    for (int i = 0; i < valueCounts.length; i++) {
+      valueCounts[i] = attributeValues.get(attributes.get(i)).size();
+    }
+  }
+
+  public List<String> getLabels() {
+    return labels;
+  }
+
+  public List<String> getAttributes() {
+    return attributes;
+  }
+
+  public Map<String, List<String>> getAttributeValues() {
+    return attributeValues;
+  }
+
+  /**
+   * Evaluates the tree on an instance of a DataSet with the meta-values the model was trained on.
+   *
+   * @return the classification of the instance
+   */
+  public String classify(Instance instance) {
+    return labels.get(classifyCode(instance.getDataSet(), instance.getRow()));
+  }
+
+  /**
+   * Classify a row of a DataSet sharing the training meta-values.
+   *
+   * @return the label code
+   */
+  public int classifyCode(DataSet set, int row) {
+    int node = 0;
+    int attribute;
+    while ((attribute = nodes.get(node)) >= 0) {
+      float t = threshold(node);
+      int branch = t != t ? set.getAttributeCode(row, attribute)
+          : set.getNumericValue(row, attribute) <= t ? 0 : 1;
+      node = nodes.get(3 * nodeCount + nodes.get(nodeCount + node) + branch);
+    }
+    return nodes.get(2 * nodeCount + node);
+  }
+
+  /**
+   * Classify a row given as its attribute codes in attribute order. A numeric attribute is given
+   * as the bits of its value, see Float.floatToIntBits.
+   *
+   * @return the label code
+   */
+  public int classifyCode(int[] codes) {
+    int node = 0;
+    int attribute;
+    while ((attribute = nodes.get(node)) >= 0) {
+      float t = threshold(node);
+      int branch = t != t ? codes[attribute] : Float.intBitsToFloat(codes[attribute]) <= t ? 0 : 1;
+      node = nodes.get(3 * nodeCount + nodes.get(nodeCount + node) + branch);
+    }
+    return nodes.get(2 * nodeCount + node);
+  }
+
+  /**
+   * Threshold of a numeric split, NaN for any other node.
+   */
+  private float threshold(int node) {
+    return thresholdBase < 0 ? Float.NaN : Float.intBitsToFloat(nodes.get(thresholdBase + node));
+  }
+
+  /**
+   * Checks every index stored in the node arrays, and that children come after their parent so a
+   * walk always ends at a leaf. Exactly the nodes splitting on a numeric attribute have a
+   * threshold, and two children.
+   */
+  boolean isWellFormed() {
+    for (int node = 0; node < nodeCount; node++) {
+      int attribute = nodes.get(node);
+      int label = nodes.get(2 * nodeCount + node);
+      if (attribute < -1 || attribute >= attributes.size() || label < 0 || label >= labels.size()) {
+        return false;
+      }
+      if (attribute < 0) {
+        continue;
+      }
+      boolean numeric = valueCounts[attribute] == 0;
+      if (numeric == Float.isNaN(threshold(node))) {
+        return false;
+      }
+      int arity = numeric ? 2 : valueCounts[attribute];
+      int offset = nodes.get(nodeCount + node);
+      if (offset < 0 || offset > childCount - arity) {
+        return false;
+      }
+      for (int value = 0; value < arity; value++) {
+        int child = nodes.get(3 * nodeCount + offset + value);
+        if (child <= node || child >= nodeCount) {
+          return false;
+        }
+      }
+    }
+    return true;
+  }
+}
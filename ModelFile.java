@@ -0,0 +1,176 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Binary file format of a trained tree. All values are little-endian:
+ *
+ * <pre>
+ * header      int magic "DTRE", int version, int labelCount, int attributeCount,
+ *             int nodeCount, int childCount, long dictionaryOffset     (32 bytes)
+ * nodes       int splitAttribute[nodeCount], int childOffset[nodeCount],
+ *             int labelCode[nodeCount], int children[childCount], float threshold[nodeCount]
+ * dictionary  labelCount strings, then per attribute its name, an int value count and the
+ *             value strings; a string is an int byte length followed by its UTF-8 bytes
+ * </pre>
+ *
+ * A numeric attribute has a value count of 0. Version 1 files, written before numeric attributes,
+ * have no threshold array and are still read.
+ *
+ * The node section holds the arrays of CompiledTree as they are, so a mapped file classifies
+ * directly from the page cache, and every process mapping the same file shares one copy of it.
+ */
+public final class ModelFile {
+  static final int MAGIC = 0x45525444; // "DTRE" read as a little-endian int
+  static final int VERSION = 2;
+  private static final int HEADER_BYTES = 32;
+
+  private ModelFile() {
+  }
+
+  /**
+   * Write the compiled tree and its dictionaries to the file, replacing it.
+   */
+  static void write(String file, List<String> labels, List<String> attributes,
+      Map<String, List<String>> attributeValues, CompiledTree tree) throws IOException {
+    int nodeCount = tree.size();
+    int childCount = tree.children.length;
+    long dictionaryOffset = HEADER_BYTES + 4L * (4L * nodeCount + childCount);
+
+    ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+    header.putInt(MAGIC).putInt(VERSION).putInt(labels.size()).putInt(attributes.size())
+        .putInt(nodeCount).putInt(childCount).putLong(dictionaryOffset).flip();
+
+    ByteBuffer nodes = ByteBuffer.allocate((int) (dictionaryOffset - HEADER_BYTES))
+        .order(ByteOrder.LITTLE_ENDIAN);
+    IntBuffer ints = nodes.asIntBuffer();
+    ints.put(tree.splitAttribute).put(tree.childOffset).put(tree.labelCode).put(tree.children);
+    nodes.position(4 * ints.position());
+    nodes.asFloatBuffer().put(tree.threshold);
+    nodes.position(0);
+
+    List<String> strings = new ArrayList<String>(labels);
+    List<Integer> valueCounts = new ArrayList<Integer>();
+    for (String attribute : attributes) {
+      strings.add(attribute);
+      valueCounts.add(attributeValues.get(attribute).size());
+      strings.addAll(attributeValues.get(attribute));
+    }
+    int dictionaryBytes = 4 * valueCounts.size();
+    List<byte[]> encoded = new ArrayList<byte[]>(strings.size());
+    for (String string : strings) {
+      byte[] bytes = string.getBytes(StandardCharsets.UTF_8);
+      encoded.add(bytes);
+      dictionaryBytes += 4 + bytes.length;
+    }
+    ByteBuffer dictionary = ByteBuffer.allocate(dictionaryBytes).order(ByteOrder.LITTLE_ENDIAN);
+    int next = 0;
+    for (int i = 0; i < labels.size(); i++) {
+      putString(dictionary, encoded.get(next++));
+    }
+    for (int attribute = 0; attribute < attributes.size(); attribute++) {
+      putString(dictionary, encoded.get(next++));
+      dictionary.putInt(valueCounts.get(attribute));
+      for (int value = 0; value < valueCounts.get(attribute); value++) {
+        putString(dictionary, encoded.get(next++));
+      }
+    }
+    dictionary.flip();
+
+    try (FileChannel channel = FileChannel.open(Paths.get(file), StandardOpenOption.WRITE,
+        StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING)) {
+      ByteBuffer[] sections = {header, nodes, dictionary};
+      long total = header.remaining() + nodes.remaining() + dictionary.remaining();
+      long written = 0;
+      while (written < total) {
+        written += channel.write(sections);
+      }
+    }
+  }
+
+  private static void putString(ByteBuffer buffer, byte[] bytes) {
+    buffer.putInt(bytes.length).put(bytes);
+  }
+
+  /**
+   * Map the file and check it describes a well formed tree.
+   */
+  public static MappedModel map(String file) throws IOException {
+    MappedByteBuffer buffer;
+    try (FileChannel channel = FileChannel.open(Paths.get(file), StandardOpenOption.READ)) {
+      if (channel.size() < HEADER_BYTES || channel.size() > Integer.MAX_VALUE) {
+        throw new IOException("Not a model file: " + file);
+      }
+      buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+    }
+    buffer.order(ByteOrder.LITTLE_ENDIAN);
+    if (buffer.getInt(0) != MAGIC) {
+      throw new IOException("Not a model file: " + file);
+    }
+    int version = buffer.getInt(4);
+    if (version != VERSION && version != 1) {
+      throw new IOException("Unsupported model file version " + version + ": " + file);
+    }
+    int nodeArrays = version == 1 ? 3 : 4; // int or float arrays of nodeCount entries
+    int labelCount = buffer.getInt(8);
+    int attributeCount = buffer.getInt(12);
+    int nodeCount = buffer.getInt(16);
+    int childCount = buffer.getInt(20);
+    long dictionaryOffset = buffer.getLong(24);
+    if (labelCount < 1 || attributeCount < 0 || nodeCount < 1 || childCount < 0
+        || dictionaryOffset != HEADER_BYTES + 4L * ((long) nodeArrays * nodeCount + childCount)
+        || dictionaryOffset > buffer.capacity()) {
+      throw new IOException("Corrupt model file header: " + file);
+    }
+
+    ByteBuffer dictionary = buffer.slice((int) dictionaryOffset,
+        buffer.capacity() - (int) dictionaryOffset).order(ByteOrder.LITTLE_ENDIAN);
+    List<String> labels = new ArrayList<String>(labelCount);
+    List<String> attributes = new ArrayList<String>(attributeCount);
+    Map<String, List<String>> attributeValues = new HashMap<String, List<String>>();
+    try {
+      for (int i = 0; i < labelCount; i++) {
+        labels.add(getString(dictionary));
+      }
+      for (int i = 0; i < attributeCount; i++) {
+        String attribute = getString(dictionary);
+        int valueCount = dictionary.getInt();
+        List<String> values = new ArrayList<String>(valueCount);
+        for (int value = 0; value < valueCount; value++) {
+          values.add(getString(dictionary));
+        }
+        attributes.add(attribute);
+        attributeValues.put(attribute, Collections.unmodifiableList(values));
+      }
+    } catch (RuntimeException e) {
+      throw new IOException("Corrupt model file dictionary: " + file, e);
+    }
+
+    IntBuffer nodes = buffer.slice(HEADER_BYTES, (int) dictionaryOffset - HEADER_BYTES)
+        .order(ByteOrder.LITTLE_ENDIAN).asIntBuffer();
+    MappedModel model = new MappedModel(Collections.unmodifiableList(labels),
+        Collections.unmodifiableList(attributes), Collections.unmodifiableMap(attributeValues),
+        nodes, nodeCount, childCount, version > 1);
+    if (!model.isWellFormed()) {
+      throw new IOException("Corrupt model file nodes: " + file);
+    }
+    return model;
+  }
+
+  private static String getString(ByteBuffer buffer) {
+    byte[] bytes = new byte[buffer.getInt()];
+    buffer.get(bytes);
+    return new String(bytes, StandardCharsets.UTF_8);
+  }
+}
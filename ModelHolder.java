@@ -0,0 +1,72 @@
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Publishes the current TreeModel to serving threads. A reader takes the model with one volatile
+ * read and classifies with it, never blocking and never seeing a model that is still being built:
+ * a new model is trained, pruned and compiled off to the side and then swapped in whole.
+ *
+ * <pre>
+ * ModelHolder holder = new ModelHolder(tree.getModel());
+ * // serving threads
+ * String label = holder.classify(instance);
+ * // trainer thread
+ * holder.publish(new DecisionTreeImpl(train, tune).getModel());
+ * </pre>
+ */
+public final class ModelHolder {
+  private final AtomicReference<TreeModel> current;
+
+  public ModelHolder(TreeModel model) {
+    if (model == null) {
+      throw new IllegalArgumentException("model must not be null");
+    }
+    this.current = new AtomicReference<TreeModel>(model);
+  }
+
+  /**
+   * The model being served. Keep the returned model for a whole request to classify all of it
+   * with the same tree, whatever is published meanwhile.
+   */
+  public TreeModel get() {
+    return current.get();
+  }
+
+  /**
+   * Serve the given model from now on.
+   *
+   * @return the model it replaces
+   */
+  public TreeModel publish(TreeModel model) {
+    if (model == null) {
+      throw new IllegalArgumentException("model must not be null");
+    }
+    return current.getAndSet(model);
+  }
+
+  /**
+   * Serve the given model only if the expected one is still served, so that concurrent trainers
+   * cannot overwrite a newer model with an older one.
+   *
+   * @return true if the model was published
+   */
+  public boolean publish(TreeModel expected, TreeModel model) {
+    if (model == null) {
+      throw new IllegalArgumentException("model must not be null");
+    }
+    return current.compareAndSet(expected, model);
+  }
+
+  /**
+   * Classify an instance with the current model.
+   */
+  public String classify(Instance instance) {
+    return current.get().classify(instance);
+  }
+
+  /**
+   * Classify every row of a DataSet with the current model, the same one for all rows.
+   */
+  public int[] classifyAll(DataSet set) {
+    return current.get().classifyAll(set);
+  }
+}
@@ -0,0 +1,397 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+
+/**
+ * Grows a decision tree from a data file without holding its rows in memory. The tree is grown
+ * level by level: one sequential pass over the rows fills the count tensor
+ * counts[attribute][value][label] of every frontier node at once, which is all the in-memory
+ * build needs to pick a split. The label counts of the children of a split are read off the
+ * tensor of their parent, so leaves are decided without another pass, and the grown tree is the
+ * one DecisionTreeImpl grows from the same file.
+ *
+ * The text file is parsed once, block by block, into a spill file holding the codes of each row
+ * in one or two bytes per column, which is what the passes read. Memory is bounded by the count
+ * tensors of the frontier nodes, not by the number of rows; when the tensors of a whole level do
+ * not fit the memory budget the level is counted in several passes. Numeric attributes are not
+ * supported.
+ */
+public class OutOfCoreTrainer {
+  private static final int BUFFER_BYTES = 1 << 23; // bytes of the spill file read or written at once
+
+  private long memoryBudget = 256L << 20; // bytes of count tensors filled by one pass
+  private long blockBytes = 64L << 20; // bytes of text parsed at once while spilling
+  private String spillDirectory = System.getProperty("java.io.tmpdir");
+  private int passes; // passes over the spill file made by the last call to train
+
+  // meta-data of the file being trained on
+  private DataSet meta;
+  private int attributeCount;
+  private int labelCount;
+  private int[] arity; // number of values of each attribute
+  private int[] labelTieOrder;
+  private int[] columnBytes; // bytes of each column in a spilled row, attributes then label
+  private int rowBytes;
+  private ByteBuffer buffer; // reused by every read and write of the spill file
+
+  /**
+   * Bytes of count tensors, 256 MB by default, filled by one pass over the rows. A level whose
+   * frontier needs more is counted in several passes, one batch of nodes at a time.
+   */
+  public OutOfCoreTrainer setMemoryBudget(long memoryBudget) {
+    if (memoryBudget < 1) {
+      throw new IllegalArgumentException("memoryBudget must be at least 1: " + memoryBudget);
+    }
+    this.memoryBudget = memoryBudget;
+    return this;
+  }
+
+  /**
+   * Bytes of text, 64 MB by default, parsed at once while the file is spilled.
+   */
+  public OutOfCoreTrainer setBlockBytes(long blockBytes) {
+    if (blockBytes < 1) {
+      throw new IllegalArgumentException("blockBytes must be at least 1: " + blockBytes);
+    }
+    this.blockBytes = blockBytes;
+    return this;
+  }
+
+  /**
+   * Directory of the temporary spill file, java.io.tmpdir by default.
+   */
+  public OutOfCoreTrainer setSpillDirectory(String spillDirectory) {
+    this.spillDirectory = spillDirectory;
+    return this;
+  }
+
+  /**
+   * Number of passes over the spilled rows made by the last call to train.
+   */
+  public int getPasses() {
+    return passes;
+  }
+
+  /**
+   * Grow a tree over every instance of the data file.
+   */
+  public DecisionTreeImpl train(String file) throws IOException {
+    Path spill = Files.createTempFile(Paths.get(spillDirectory), "spill", ".codes");
+    passes = 0;
+    buffer = ByteBuffer.allocate(BUFFER_BYTES);
+    try {
+      int[] rootLabelCounts = spill(file, spill);
+      return new DecisionTreeImpl(meta, grow(spill, rootLabelCounts));
+    } finally {
+      Files.deleteIfExists(spill);
+      meta = null;
+      buffer = null;
+    }
+  }
+
+  /**
+   * Parse the file into the spill file, one fixed width record of codes per row.
+   *
+   * @return number of rows per label
+   */
+  private int[] spill(String file, Path spill) throws IOException {
+    long[] rows = {0};
+    int[][] labelCounts = {null};
+    try (FileChannel out = FileChannel.open(spill, StandardOpenOption.WRITE)) {
+      DataSet header = new DataSetLoader().scan(file, blockBytes, block -> {
+        if (labelCounts[0] == null) {
+          setMeta(block);
+          labelCounts[0] = new int[labelCount];
+        }
+        rows[0] += block.size();
+        if (rows[0] > Integer.MAX_VALUE) {
+          throw new IOException("More than " + Integer.MAX_VALUE + " rows in " + file);
+        }
+        for (int row = 0; row < block.size(); row++) {
+          if (buffer.remaining() < rowBytes) {
+            write(out, buffer);
+          }
+          for (int column = 0; column <= attributeCount; column++) {
+            int code = block.getAttributeCode(row, column);
+            if (columnBytes[column] == 1) {
+              buffer.put((byte) code);
+            } else {
+              buffer.putShort((short) code);
+            }
+          }
+          labelCounts[0][block.getLabelCode(row)]++;
+        }
+      });
+      write(out, buffer);
+      if (labelCounts[0] == null) {
+        setMeta(header);
+        labelCounts[0] = new int[labelCount];
+      }
+      meta = header;
+    }
+    return labelCounts[0];
+  }
+
+  private void setMeta(DataSet set) {
+    if (set.hasNumericAttributes()) {
+      throw new IllegalArgumentException("numeric attributes are not supported");
+    }
+    attributeCount = set.attributes.size();
+    labelCount = set.labels.size();
+    arity = new int[attributeCount];
+    columnBytes = new int[attributeCount + 1];
+    rowBytes = 0;
+    for (int column = 0; column <= attributeCount; column++) {
+      int values = column < attributeCount
+          ? set.attributeValues.get(set.attributes.get(column)).size() : labelCount;
+      if (column < attributeCount) {
+        arity[column] = values;
+      }
+      columnBytes[column] = values <= 0xFF + 1 ? 1 : 2;
+      rowBytes += columnBytes[column];
+    }
+    labelTieOrder = DecisionTreeImpl.labelTieOrder(set.labels);
+  }
+
+  private static void write(FileChannel out, ByteBuffer buffer) throws IOException {
+    buffer.flip();
+    while (buffer.hasRemaining()) {
+      out.write(buffer);
+    }
+    buffer.clear();
+  }
+
+  /**
+   * Receives the codes of each spilled row, attributes then label.
+   */
+  private interface RowVisitor {
+    void visit(int[] codes);
+  }
+
+  /**
+   * Read the spill file sequentially, decoding every row.
+   */
+  private void scanSpill(Path spill, RowVisitor visitor) throws IOException {
+    passes++;
+    int[] codes = new int[attributeCount + 1];
+    buffer.clear();
+    try (FileChannel in = FileChannel.open(spill, StandardOpenOption.READ)) {
+      while (in.read(buffer) > 0 || buffer.position() > 0) {
+        buffer.flip();
+        while (buffer.remaining() >= rowBytes) {
+          for (int column = 0; column <= attributeCount; column++) {
+            codes[column] = columnBytes[column] == 1 ? buffer.get() & 0xFF
+                : buffer.getShort() & 0xFFFF;
+          }
+          visitor.visit(codes);
+        }
+        buffer.compact();
+        if (buffer.position() > 0 && in.position() == in.size()) {
+          throw new IOException("Truncated spill file " + spill);
+        }
+      }
+    }
+  }
+
+  /**
+   * A node of the tree being grown.
+   */
+  private static class Node {
+    final int labelCode;
+    final int parentValueCode;
+    final int parentAttributeIndex;
+    int attributeIndex = -1; // split attribute once decided
+    Node[] children;
+    int[] histogram; // rows per label reaching the node, null when none does
+    // set while the split of the node is pending
+    BitSet candidates;
+    int[] labelCounts;
+    int rows;
+    int[] tensor; // flat counts of the candidates while its batch is counted
+    int[] tensorOffset; // start of the counts of each candidate in tensor
+
+    Node(int labelCode, int parentValueCode, int parentAttributeIndex) {
+      this.labelCode = labelCode;
+      this.parentValueCode = parentValueCode;
+      this.parentAttributeIndex = parentAttributeIndex;
+    }
+  }
+
+  /**
+   * Grow the tree level by level over the spilled rows.
+   */
+  private DecTreeNodeImpl grow(Path spill, int[] rootLabelCounts) throws IOException {
+    BitSet allAttributes = new BitSet(attributeCount);
+    allAttributes.set(0, attributeCount);
+    Node root = newNode(rootLabelCounts, -1, allAttributes, -1, -1);
+    List<Node> frontier = new ArrayList<Node>();
+    if (root.candidates != null) {
+      frontier.add(root);
+    }
+    while (!frontier.isEmpty()) {
+      List<Node> next = new ArrayList<Node>();
+      int start = 0;
+      while (start < frontier.size()) {
+        // as many nodes as fit the budget, and at least one
+        int end = start;
+        long bytes = 0;
+        do {
+          bytes += 4L * tensorSize(frontier.get(end));
+          end++;
+        } while (end < frontier.size() && bytes + 4L * tensorSize(frontier.get(end)) <= memoryBudget);
+        countBatch(spill, root, frontier.subList(start, end));
+        for (Node node : frontier.subList(start, end)) {
+          split(node, next);
+        }
+        start = end;
+      }
+      frontier = next;
+    }
+    return toTreeNode(root);
+  }
+
+  private int tensorSize(Node node) {
+    int size = 0;
+    for (int attribute = node.candidates.nextSetBit(0); attribute >= 0;
+        attribute = node.candidates.nextSetBit(attribute + 1)) {
+      size += arity[attribute] * labelCount;
+    }
+    return size;
+  }
+
+  /**
+   * Fill the tensors of a batch of frontier nodes in one pass over the rows.
+   */
+  private void countBatch(Path spill, Node root, List<Node> batch) throws IOException {
+    for (Node node : batch) {
+      node.tensorOffset = new int[attributeCount];
+      int size = 0;
+      for (int attribute = node.candidates.nextSetBit(0); attribute >= 0;
+          attribute = node.candidates.nextSetBit(attribute + 1)) {
+        node.tensorOffset[attribute] = size;
+        size += arity[attribute] * labelCount;
+      }
+      node.tensor = new int[size];
+    }
+    scanSpill(spill, codes -> {
+      Node node = root;
+      while (node.attributeIndex >= 0) {
+        node = node.children[codes[node.attributeIndex]];
+      }
+      int[] tensor = node.tensor;
+      if (tensor == null) {
+        // a leaf, or a frontier node of another batch
+        return;
+      }
+      int label = codes[attributeCount];
+      int[] offset = node.tensorOffset;
+      BitSet candidates = node.candidates;
+      for (int attribute = candidates.nextSetBit(0); attribute >= 0;
+          attribute = candidates.nextSetBit(attribute + 1)) {
+        tensor[offset[attribute] + codes[attribute] * labelCount + label]++;
+      }
+    });
+  }
+
+  /**
+   * Split a counted frontier node on its best attribute, adding the children that need a split of
+   * their own to next.
+   */
+  private void split(Node node, List<Node> next) {
+    int[] candidates = node.candidates.stream().toArray();
+    int[][][] counts = new int[attributeCount][][];
+    for (int attribute : candidates) {
+      counts[attribute] = new int[arity[attribute]][labelCount];
+      for (int value = 0; value < arity[attribute]; value++) {
+        System.arraycopy(node.tensor, node.tensorOffset[attribute] + value * labelCount,
+            counts[attribute][value], 0, labelCount);
+      }
+    }
+    int best = DecisionTreeImpl.findMaxImporantAttribute(counts, candidates, node.labelCounts,
+        node.rows, meta.attributes);
+
+    BitSet childCandidates = (BitSet) node.candidates.clone();
+    childCandidates.clear(best);
+    node.children = new Node[arity[best]];
+    for (int value = 0; value < arity[best]; value++) {
+      Node child = newNode(counts[best][value], node.labelCode, childCandidates, best, value);
+      node.children[value] = child;
+      if (child.candidates != null) {
+        next.add(child);
+      }
+    }
+    node.attributeIndex = best;
+    node.candidates = null;
+    node.labelCounts = null;
+    node.tensor = null;
+    node.tensorOffset = null;
+  }
+
+  /**
+   * Create a node from the label counts of its rows, deciding as _buildDecisionTree does whether
+   * it is a leaf. A node left to split keeps its counts and candidate attributes.
+   */
+  private Node newNode(int[] labelCounts, int parentLabel, BitSet candidates,
+      int parentAttributeIndex, int parentValueCode) {
+    int rows = 0;
+    for (int count : labelCounts) {
+      rows += count;
+    }
+    if (rows == 0) {
+      return new Node(parentLabel, parentValueCode, parentAttributeIndex);
+    }
+    int label = DecisionTreeImpl.getMostCommonLabel(labelCounts, labelTieOrder);
+    Node node = new Node(label, parentValueCode, parentAttributeIndex);
+    node.histogram = labelCounts;
+    if (labelCounts[label] != rows && !candidates.isEmpty()) {
+      node.candidates = candidates;
+      node.labelCounts = labelCounts;
+      node.rows = rows;
+    }
+    return node;
+  }
+
+  /**
+   * Turn the grown tree into DecTreeNodeImpl nodes, filling in their String fields.
+   */
+  private DecTreeNodeImpl toTreeNode(Node node) {
+    String parentValue = node.parentValueCode < 0 ? null
+        : meta.attributeValues.get(meta.attributes.get(node.parentAttributeIndex))
+            .get(node.parentValueCode);
+    boolean terminal = node.attributeIndex < 0;
+    DecTreeNodeImpl treeNode = new DecTreeNodeImpl(meta.labels.get(node.labelCode),
+        node.labelCode, terminal ? null : meta.attributes.get(node.attributeIndex),
+        node.attributeIndex, parentValue, node.parentValueCode, terminal);
+    treeNode.labelCounts = node.histogram;
+    if (!terminal) {
+      for (Node child : node.children) {
+        treeNode.addChild(toTreeNode(child));
+      }
+    }
+    return treeNode;
+  }
+
+  /**
+   * Grows a tree from a data file and saves it in the format of ModelFile.
+   */
+  public static void main(String[] args) throws IOException {
+    if (args.length < 2) {
+      System.out.println("usage: java OutOfCoreTrainer <trainFilename> <modelFilename> "
+          + "[<memoryBudgetMB>]");
+      System.exit(-1);
+    }
+    OutOfCoreTrainer trainer = new OutOfCoreTrainer();
+    if (args.length > 2) {
+      trainer.setMemoryBudget(Long.parseLong(args[2]) << 20);
+    }
+    trainer.train(args[0]).save(args[1]);
+    System.out.format("%s %d passes\n", args[0], trainer.getPasses());
+  }
+}
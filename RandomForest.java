@@ -0,0 +1,244 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Random forest of DecisionTreeImpl trees. Each tree grows on its own bootstrap sample of the
+ * training rows, an index array drawing rows with replacement, and scores a random subset of the
+ * remaining attributes at each split (TreeOptions.setAttributesPerNode). The forest classifies by
+ * majority vote of its trees, ties broken as DecisionTreeImpl breaks majority label ties.
+ *
+ * Trees are grown in parallel, one sequential build per task, over options.getParallelism()
+ * threads. classifyAll routes blocks of rows through one tree after the other and spreads large
+ * data sets over the common fork/join pool; beyond its per-task buffers it allocates nothing per
+ * row, and neither does classify.
+ */
+public class RandomForest extends DecisionTree {
+  private static final int BLOCK = 4096; // rows voted on together by classifyAll
+  private static final int PARALLEL_ROWS = 1 << 14; // rows below which classifyAll stays on one thread
+
+  private final List<String> labels;
+  private final List<String> attributes;
+  private final Map<String, List<String>> attributeValues;
+  private final int[] labelTieOrder;
+  private final DecisionTreeImpl[] trees;
+  private final CompiledTree[] compiled;
+  // votes of the calling thread for classifyCode
+  private final ThreadLocal<int[]> votes;
+
+  /**
+   * Grow a forest of the given number of trees, each scoring about the square root of the number
+   * of attributes at each split.
+   *
+   * @param train: the training set
+   * @param trees: number of trees
+   */
+  RandomForest(DataSet train, int trees) {
+    this(train, trees, new TreeOptions().setParallelism(Runtime.getRuntime().availableProcessors())
+        .setAttributesPerNode(Math.max(1, (int) Math.round(Math.sqrt(train.attributes.size())))));
+  }
+
+  /**
+   * Grow a forest of the given number of trees.
+   *
+   * @param train: the training set
+   * @param trees: number of trees
+   * @param options: how to grow each tree; the parallelism is the number of trees grown at once
+   *        and the seed seeds both the bootstrap samples and the attribute draws, each tree
+   *        growing on one thread with a seed of its own
+   */
+  RandomForest(DataSet train, int trees, TreeOptions options) {
+    if (trees < 1) {
+      throw new IllegalArgumentException("trees must be at least 1: " + trees);
+    }
+    this.labels = train.labels;
+    this.attributes = train.attributes;
+    this.attributeValues = train.attributeValues;
+    this.labelTieOrder = DecisionTreeImpl.labelTieOrder(train.labels);
+    this.trees = new DecisionTreeImpl[trees];
+    this.compiled = new CompiledTree[trees];
+    this.votes = ThreadLocal.withInitial(() -> new int[labels.size()]);
+
+    List<ForkJoinTask<?>> tasks = new ArrayList<ForkJoinTask<?>>(trees);
+    for (int t = 0; t < trees; t++) {
+      int tree = t;
+      tasks.add(ForkJoinTask.adapt(() -> {
+        // every tree draws from its own seed, whatever thread grows it
+        SplittableRandom random = new SplittableRandom(options.getSeed() + tree);
+        int[] sample = new int[train.size()];
+        for (int i = 0; i < sample.length; i++) {
+          sample[i] = random.nextInt(sample.length);
+        }
+        TreeOptions treeOptions = options.copy().setParallelism(1).setSeed(random.nextLong());
+        this.trees[tree] = new DecisionTreeImpl(train, sample, treeOptions);
+        this.compiled[tree] = this.trees[tree].getCompiledTree();
+      }));
+    }
+    if (options.getParallelism() > 1 && trees > 1) {
+      ForkJoinPool pool = new ForkJoinPool(Math.min(options.getParallelism(), trees));
+      try {
+        pool.invoke(ForkJoinTask.adapt(() -> ForkJoinTask.invokeAll(tasks)));
+      } finally {
+        pool.shutdown();
+      }
+    } else {
+      for (ForkJoinTask<?> task : tasks) {
+        task.invoke();
+      }
+    }
+  }
+
+  /**
+   * Number of trees in the forest.
+   */
+  public int size() {
+    return trees.length;
+  }
+
+  /**
+   * The tree at the given position of the forest.
+   */
+  public DecisionTreeImpl getTree(int tree) {
+    return trees[tree];
+  }
+
+  @Override
+  public String classify(Instance instance) {
+    return labels.get(classifyCode(instance));
+  }
+
+  /**
+   * Classify an instance of a DataSet sharing the training meta-values by majority vote.
+   *
+   * @return the position of the predicted label in labels
+   */
+  int classifyCode(Instance instance) {
+    int[] counts = votes.get();
+    for (CompiledTree tree : compiled) {
+      counts[tree.classify(instance.getDataSet(), instance.getRow())]++;
+    }
+    int label = DecisionTreeImpl.getMostCommonLabel(counts, labelTieOrder);
+    Arrays.fill(counts, 0);
+    return label;
+  }
+
+  /**
+   * Class probabilities of an instance of a DataSet sharing the training meta-values: the mean of
+   * the leaf distributions of the trees.
+   *
+   * @return the probability of each label, by position in labels
+   */
+  public double[] classifyProba(Instance instance) {
+    double[] proba = new double[labels.size()];
+    double[] treeProba = new double[labels.size()];
+    for (CompiledTree tree : compiled) {
+      tree.classifyProba(instance.getDataSet(), instance.getRow(), treeProba);
+      for (int label = 0; label < proba.length; label++) {
+        proba[label] += treeProba[label];
+      }
+    }
+    for (int label = 0; label < proba.length; label++) {
+      proba[label] /= compiled.length;
+    }
+    return proba;
+  }
+
+  @Override
+  public int[] classifyAll(DataSet set) {
+    int[] classifications = new int[set.size()];
+    if (set.size() < PARALLEL_ROWS) {
+      vote(set, classifications, 0, set.size());
+    } else {
+      ForkJoinPool.commonPool().invoke(new VoteTask(set, classifications, 0, set.size()));
+    }
+    return classifications;
+  }
+
+  /**
+   * Classifies a range of rows by splitting it in halves down to PARALLEL_ROWS.
+   */
+  @SuppressWarnings("serial")
+  private class VoteTask extends RecursiveAction {
+    private final DataSet set;
+    private final int[] out;
+    private final int from;
+    private final int to;
+
+    VoteTask(DataSet set, int[] out, int from, int to) {
+      this.set = set;
+      this.out = out;
+      this.from = from;
+      this.to = to;
+    }
+
+    @Override
+    protected void compute() {
+      if (to - from <= PARALLEL_ROWS) {
+        vote(set, out, from, to);
+      } else {
+        int middle = (from + to) >>> 1;
+        invokeAll(new VoteTask(set, out, from, middle), new VoteTask(set, out, middle, to));
+      }
+    }
+  }
+
+  /**
+   * Classify the rows in [from, to) one block at a time: each tree routes the whole block with the
+   * block routing of CompiledTree.classifyAll, then the votes of the block are counted.
+   */
+  private void vote(DataSet set, int[] out, int from, int to) {
+    int labelCount = labels.size();
+    int[] treeLabels = new int[BLOCK];
+    int[] blockVotes = new int[BLOCK * labelCount];
+    int[] counts = new int[labelCount];
+    int[] valueCounts = CompiledTree.valueCounts(set);
+    CompiledTree.BatchRouter[] routers = new CompiledTree.BatchRouter[compiled.length];
+    for (int t = 0; t < compiled.length; t++) {
+      routers[t] = compiled[t].router(set, valueCounts, treeLabels);
+    }
+    for (int start = from; start < to; start += BLOCK) {
+      int end = Math.min(to, start + BLOCK);
+      Arrays.fill(blockVotes, 0);
+      for (CompiledTree.BatchRouter router : routers) {
+        router.classify(start, end, start);
+        for (int i = 0; i < end - start; i++) {
+          blockVotes[i * labelCount + treeLabels[i]]++;
+        }
+      }
+      for (int i = 0; i < end - start; i++) {
+        System.arraycopy(blockVotes, i * labelCount, counts, 0, labelCount);
+        out[start + i] = DecisionTreeImpl.getMostCommonLabel(counts, labelTieOrder);
+      }
+    }
+  }
+
+  @Override
+  public void print() {
+    for (int t = 0; t < trees.length; t++) {
+      System.out.println("TREE " + t);
+      trees[t].print();
+    }
+  }
+
+  @Override
+  public void rootInfoGain(DataSet train) {
+    new DecisionTreeImpl().rootInfoGain(train);
+  }
+
+  @Override
+  public void printAccuracy(DataSet test) {
+    int[] classifications = classifyAll(test);
+    int correct = 0;
+    for (int i = 0; i < classifications.length; i++) {
+      if (classifications[i] == test.getLabelCode(i)) {
+        correct++;
+      }
+    }
+    System.out.format("%.5f\n", (double) correct / classifications.length);
+  }
+}
@@ -0,0 +1,128 @@
+/**
+ * Receives metrics while a DecisionTreeImpl is grown and pruned. Set one with
+ * TreeOptions.setListener; TrainingMetrics collects every metric. With no listener set and no Flight
+ * Recorder recording of TreeBuildEvent or TreePruneEvent, the build makes no calls and takes no
+ * timestamps, so instrumentation can stay configured in production.
+ *
+ * A build with a parallelism above 1 calls the listener from several worker threads at once, so
+ * implementations must be thread-safe. Every method does nothing by default.
+ */
+public interface TrainingListener {
+
+  /**
+   * Phases of growing and pruning a tree whose time is reported.
+   */
+  enum Phase {
+    COUNT, // scanning rows to count labels and attribute values
+    SCORE, // information gain of the candidate attributes
+    MAJORITY, // majority label of a node
+    PARTITION, // reordering the rows of a split node by value
+    PRUNE // routing the tune rows and deciding the prunes
+  }
+
+  /**
+   * A build starts over the given number of rows and attributes.
+   */
+  default void buildStarted(int rows, int attributes) {
+  }
+
+  /**
+   * A node was grown at the given depth, 0 for the root.
+   */
+  default void nodeCreated(int depth, boolean leaf) {
+  }
+
+  /**
+   * A pass over the given number of rows counted labels or attribute values.
+   */
+  default void rowsScanned(int rows) {
+  }
+
+  /**
+   * The given number of candidate attributes were scored for a split.
+   */
+  default void splitsEvaluated(int candidates) {
+  }
+
+  /**
+   * One run of a phase took the given time.
+   */
+  default void phaseTimed(Phase phase, long nanos) {
+  }
+
+  /**
+   * The number of nodes created but not grown yet changed to the given size.
+   */
+  default void frontierChanged(int nodes) {
+  }
+
+  /**
+   * The given number of tune rows were routed through the tree to decide its prunes.
+   */
+  default void tuneRowsClassified(int rows) {
+  }
+
+  /**
+   * A build finished after the given time.
+   */
+  default void buildFinished(long nanos) {
+  }
+
+  /**
+   * A listener calling both listeners in turn, or the one that is not null.
+   */
+  static TrainingListener both(TrainingListener first, TrainingListener second) {
+    if (first == null || second == null) {
+      return first == null ? second : first;
+    }
+    return new TrainingListener() {
+      @Override
+      public void buildStarted(int rows, int attributes) {
+        first.buildStarted(rows, attributes);
+        second.buildStarted(rows, attributes);
+      }
+
+      @Override
+      public void nodeCreated(int depth, boolean leaf) {
+        first.nodeCreated(depth, leaf);
+        second.nodeCreated(depth, leaf);
+      }
+
+      @Override
+      public void rowsScanned(int rows) {
+        first.rowsScanned(rows);
+        second.rowsScanned(rows);
+      }
+
+      @Override
+      public void splitsEvaluated(int candidates) {
+        first.splitsEvaluated(candidates);
+        second.splitsEvaluated(candidates);
+      }
+
+      @Override
+      public void phaseTimed(Phase phase, long nanos) {
+        first.phaseTimed(phase, nanos);
+        second.phaseTimed(phase, nanos);
+      }
+
+      @Override
+      public void frontierChanged(int nodes) {
+        first.frontierChanged(nodes);
+        second.frontierChanged(nodes);
+      }
+
+      @Override
+      public void tuneRowsClassified(int rows) {
+        first.tuneRowsClassified(rows);
+        second.tuneRowsClassified(rows);
+      }
+
+      @Override
+      public void buildFinished(long nanos) {
+        first.buildFinished(nanos);
+        second.buildFinished(nanos);
+      }
+    };
+  }
+}
@@ -0,0 +1,149 @@
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * TrainingListener adding up the metrics of every build and pruning it is set on. Safe to share
+ * between the threads of a parallel build and between trees.
+ */
+public class TrainingMetrics implements TrainingListener {
+  private static final int MAX_DEPTH = 1 << 10; // deepest level counted on its own
+
+  private final LongAdder builds = new LongAdder();
+  private final LongAdder buildNanos = new LongAdder();
+  private final AtomicLongArray nodesPerDepth = new AtomicLongArray(MAX_DEPTH + 1);
+  private final LongAdder leaves = new LongAdder();
+  private final LongAdder rowsScanned = new LongAdder();
+  private final LongAdder splitEvaluations = new LongAdder();
+  private final LongAdder tuneRowsClassified = new LongAdder();
+  private final AtomicLongArray phaseNanos = new AtomicLongArray(Phase.values().length);
+  private final AtomicInteger peakFrontier = new AtomicInteger();
+  private final AtomicInteger deepest = new AtomicInteger(-1);
+
+  @Override
+  public void buildStarted(int rows, int attributes) {
+    builds.increment();
+  }
+
+  @Override
+  public void nodeCreated(int depth, boolean leaf) {
+    nodesPerDepth.incrementAndGet(Math.min(depth, MAX_DEPTH));
+    deepest.accumulateAndGet(depth, Math::max);
+    if (leaf) {
+      leaves.increment();
+    }
+  }
+
+  @Override
+  public void rowsScanned(int rows) {
+    rowsScanned.add(rows);
+  }
+
+  @Override
+  public void splitsEvaluated(int candidates) {
+    splitEvaluations.add(candidates);
+  }
+
+  @Override
+  public void phaseTimed(Phase phase, long nanos) {
+    phaseNanos.addAndGet(phase.ordinal(), nanos);
+  }
+
+  @Override
+  public void frontierChanged(int nodes) {
+    peakFrontier.accumulateAndGet(nodes, Math::max);
+  }
+
+  @Override
+  public void tuneRowsClassified(int rows) {
+    tuneRowsClassified.add(rows);
+  }
+
+  @Override
+  public void buildFinished(long nanos) {
+    buildNanos.add(nanos);
+  }
+
+  public long getBuilds() {
+    return builds.sum();
+  }
+
+  /**
+   * Total time of the builds, pruning excluded.
+   */
+  public long getBuildNanos() {
+    return buildNanos.sum();
+  }
+
+  /**
+   * Nodes grown at each depth, from the root at 0 to the deepest node. Nodes deeper than 1024 are
+   * counted at 1024.
+   */
+  public long[] getNodesPerDepth() {
+    long[] nodes = new long[Math.min(deepest.get(), MAX_DEPTH) + 1];
+    for (int depth = 0; depth < nodes.length; depth++) {
+      nodes[depth] = nodesPerDepth.get(depth);
+    }
+    return nodes;
+  }
+
+  public long getNodes() {
+    long nodes = 0;
+    for (long count : getNodesPerDepth()) {
+      nodes += count;
+    }
+    return nodes;
+  }
+
+  public long getLeaves() {
+    return leaves.sum();
+  }
+
+  /**
+   * Rows read by the passes counting labels and attribute values, a row read once per pass.
+   */
+  public long getRowsScanned() {
+    return rowsScanned.sum();
+  }
+
+  /**
+   * Information gains computed, one per candidate attribute of each split.
+   */
+  public long getSplitEvaluations() {
+    return splitEvaluations.sum();
+  }
+
+  public long getTuneRowsClassified() {
+    return tuneRowsClassified.sum();
+  }
+
+  /**
+   * Total time spent in the phase. Phases of a parallel build add up the time of every thread.
+   */
+  public long getNanos(Phase phase) {
+    return phaseNanos.get(phase.ordinal());
+  }
+
+  /**
+   * Largest number of nodes created but not grown yet at any time of a build.
+   */
+  public int getPeakFrontier() {
+    return peakFrontier.get();
+  }
+
+  @Override
+  public String toString() {
+    StringBuilder report = new StringBuilder();
+    report.append(String.format("builds %d in %.3f ms%n", getBuilds(), getBuildNanos() / 1e6));
+    report.append(String.format("nodes %d, leaves %d, per depth %s%n", getNodes(), getLeaves(),
+        Arrays.toString(getNodesPerDepth())));
+    report.append(String.format("rows scanned %d, split evaluations %d, peak frontier %d%n",
+        getRowsScanned(), getSplitEvaluations(), getPeakFrontier()));
+    report.append(String.format("tune rows classified %d%n", getTuneRowsClassified()));
+    for (Phase phase : Phase.values()) {
+      report.append(String.format("%s %.3f ms%n", phase, getNanos(phase) / 1e6));
+    }
+    return report.toString();
+  }
+}
@@ -0,0 +1,63 @@
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Timespan;
+
+/**
+ * Flight Recorder event covering one DecisionTreeImpl build, committed with the metrics of the
+ * build when the event is enabled in a recording, e.g. java -XX:StartFlightRecording:filename=x.jfr.
+ * While it is not enabled the build collects nothing for it.
+ */
+@Name("decisiontree.TreeBuild")
+@Label("Tree Build")
+@Category("Decision Tree")
+@Description("Growing one decision tree")
+class TreeBuildEvent extends jdk.jfr.Event {
+  @Label("Rows")
+  int rows;
+
+  @Label("Attributes")
+  int attributes;
+
+  @Label("Parallelism")
+  int parallelism;
+
+  @Label("Nodes")
+  long nodes;
+
+  @Label("Leaves")
+  long leaves;
+
+  @Label("Depth")
+  @Description("Depth of the deepest node, 0 for a tree of one leaf")
+  int depth;
+
+  @Label("Rows Scanned")
+  @Description("Rows read by the passes counting labels and attribute values")
+  long rowsScanned;
+
+  @Label("Split Evaluations")
+  @Description("Information gains computed")
+  long splitEvaluations;
+
+  @Label("Peak Frontier")
+  @Description("Largest number of nodes created but not grown yet")
+  int peakFrontier;
+
+  @Label("Count Time")
+  @Timespan
+  long countTime;
+
+  @Label("Score Time")
+  @Timespan
+  long scoreTime;
+
+  @Label("Majority Time")
+  @Timespan
+  long majorityTime;
+
+  @Label("Partition Time")
+  @Timespan
+  long partitionTime;
+}
@@ -0,0 +1,93 @@
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Immutable snapshot of a trained tree for serving. It holds its own copies of the dictionaries
+ * and a CompiledTree that nothing changes once built, so any number of threads may classify with
+ * it without locking while the tree it was taken from is pruned, retrained or discarded. See
+ * ModelHolder for swapping snapshots under load.
+ */
+public final class TreeModel {
+  private final List<String> labels;
+  private final List<String> attributes;
+  private final Map<String, List<String>> attributeValues;
+  private final CompiledTree compiled;
+
+  TreeModel(List<String> labels, List<String> attributes,
+      Map<String, List<String>> attributeValues, CompiledTree compiled) {
+    this.labels = Collections.unmodifiableList(new ArrayList<String>(labels));
+    this.attributes = Collections.unmodifiableList(new ArrayList<String>(attributes));
+    Map<String, List<String>> values = new HashMap<String, List<String>>();
+    for (String attribute : attributes) {
+      values.put(attribute,
+          Collections.unmodifiableList(new ArrayList<String>(attributeValues.get(attribute))));
+    }
+    this.attributeValues = Collections.unmodifiableMap(values);
+    this.compiled = compiled;
+  }
+
+  public List<String> getLabels() {
+    return labels;
+  }
+
+  public List<String> getAttributes() {
+    return attributes;
+  }
+
+  public Map<String, List<String>> getAttributeValues() {
+    return attributeValues;
+  }
+
+  /**
+   * Evaluates the tree on an instance of a DataSet with the meta-values the model was trained on.
+   *
+   * @return the classification of the instance
+   */
+  public String classify(Instance instance) {
+    return labels.get(classifyCode(instance.getDataSet(), instance.getRow()));
+  }
+
+  /**
+   * Classify a row of a DataSet sharing the training meta-values.
+   *
+   * @return the label code
+   */
+  public int classifyCode(DataSet set, int row) {
+    return compiled.classify(set, row);
+  }
+
+  /**
+   * Class probabilities of an instance of a DataSet with the meta-values the model was trained on.
+   *
+   * @return the probability of each label, by position in getLabels()
+   */
+  public double[] classifyProba(Instance instance) {
+    double[] proba = new double[labels.size()];
+    compiled.classifyProba(instance.getDataSet(), instance.getRow(), proba);
+    return proba;
+  }
+
+  /**
+   * Classify a row given as its attribute codes in attribute order. A numeric attribute is given
+   * as the bits of its value, see Float.floatToIntBits.
+   *
+   * @return the label code
+   */
+  public int classifyCode(int[] codes) {
+    return compiled.classify(codes);
+  }
+
+  /**
+   * Classify every row of a DataSet sharing the training meta-values.
+   *
+   * @return the label code of row i at position i
+   */
+  public int[] classifyAll(DataSet set) {
+    int[] classifications = new int[set.size()];
+    compiled.classifyAll(set, classifications);
+    return classifications;
+  }
+}
@@ -0,0 +1,276 @@
+/**
+ * Settings for growing a DecisionTreeImpl. The defaults grow the tree on the calling thread, exactly
+ * like the constructors that take no options.
+ *
+ * Setters return this so options can be chained:
+ * new TreeOptions().setParallelism(32).setParallelSubtreeRows(50000)
+ */
+public class TreeOptions {
+
+  /**
+   * How the candidate splits of a node are scored.
+   */
+  public enum Criterion {
+    INFO_GAIN, // information gain, as ID3
+    GAIN_RATIO // information gain over the entropy of the branch sizes, as C4.5
+  }
+
+  private int parallelism = 1; // worker threads used to grow the tree, 1 means sequential
+  private int parallelSubtreeRows = 10000; // minimum rows of a node to grow its children as tasks
+  private int parallelScoringRows = 100000; // minimum rows of a node to score attributes as tasks
+  private int attributesPerNode = 0; // attributes drawn at random for each split, 0 means all
+  private long seed = 1; // seed of the attribute draws
+  private int maxDepth = 0; // deepest level of a split, 0 means unlimited
+  private int minRowsPerLeaf = 1; // fewest rows of a child a split may leave, empty ones aside
+  private double minGain = 0; // smallest information gain of a split
+  private int minRowsToSplit = 0; // fewest rows of a node to split it, 0 means no minimum
+  private int maxNodes = 0; // most nodes of the tree, 0 means unlimited
+  private boolean mergeEmptyBranches = false; // whether values no row takes share one leaf
+  private Criterion criterion = Criterion.INFO_GAIN; // how splits are scored
+  private int maxBranches = 0; // most children of a split grouping values, 0 means one per value
+  private TrainingListener listener; // receives the metrics of the build, null for none
+
+  /**
+   * Copy of these options, to change some of them without changing these.
+   */
+  TreeOptions copy() {
+    TreeOptions copy = new TreeOptions();
+    copy.parallelism = parallelism;
+    copy.parallelSubtreeRows = parallelSubtreeRows;
+    copy.parallelScoringRows = parallelScoringRows;
+    copy.attributesPerNode = attributesPerNode;
+    copy.seed = seed;
+    copy.maxDepth = maxDepth;
+    copy.minRowsPerLeaf = minRowsPerLeaf;
+    copy.minGain = minGain;
+    copy.minRowsToSplit = minRowsToSplit;
+    copy.maxNodes = maxNodes;
+    copy.mergeEmptyBranches = mergeEmptyBranches;
+    copy.criterion = criterion;
+    copy.maxBranches = maxBranches;
+    copy.listener = listener;
+    return copy;
+  }
+
+  public int getParallelism() {
+    return parallelism;
+  }
+
+  /**
+   * Number of worker threads of the ForkJoinPool used to grow the tree. 1 grows it on the calling
+   * thread. Any value grows the same tree.
+   */
+  public TreeOptions setParallelism(int parallelism) {
+    if (parallelism < 1) {
+      throw new IllegalArgumentException("parallelism must be at least 1: " + parallelism);
+    }
+    this.parallelism = parallelism;
+    return this;
+  }
+
+  public int getParallelSubtreeRows() {
+    return parallelSubtreeRows;
+  }
+
+  /**
+   * Nodes with at least this many rows grow their children as separate fork/join tasks.
+   */
+  public TreeOptions setParallelSubtreeRows(int parallelSubtreeRows) {
+    this.parallelSubtreeRows = parallelSubtreeRows;
+    return this;
+  }
+
+  public int getParallelScoringRows() {
+    return parallelScoringRows;
+  }
+
+  /**
+   * Nodes with at least this many rows count the candidate attributes in separate fork/join tasks.
+   */
+  public TreeOptions setParallelScoringRows(int parallelScoringRows) {
+    this.parallelScoringRows = parallelScoringRows;
+    return this;
+  }
+
+  public int getAttributesPerNode() {
+    return attributesPerNode;
+  }
+
+  /**
+   * Number of attributes drawn at random among the remaining ones to score each split, as in a
+   * random forest. 0, the default, scores every remaining attribute.
+   */
+  public TreeOptions setAttributesPerNode(int attributesPerNode) {
+    if (attributesPerNode < 0) {
+      throw new IllegalArgumentException("attributesPerNode must be at least 0: " + attributesPerNode);
+    }
+    this.attributesPerNode = attributesPerNode;
+    return this;
+  }
+
+  public long getSeed() {
+    return seed;
+  }
+
+  /**
+   * Seed of the attribute draws of setAttributesPerNode. Each node draws from its own seed, so the
+   * tree does not depend on the parallelism.
+   */
+  public TreeOptions setSeed(long seed) {
+    this.seed = seed;
+    return this;
+  }
+
+  public int getMaxDepth() {
+    return maxDepth;
+  }
+
+  /**
+   * Number of splits on the longest path from the root to a leaf; 1 grows decision stumps. 0, the
+   * default, lets every path split until its rows are pure or its attributes used up.
+   */
+  public TreeOptions setMaxDepth(int maxDepth) {
+    if (maxDepth < 0) {
+      throw new IllegalArgumentException("maxDepth must be at least 0: " + maxDepth);
+    }
+    this.maxDepth = maxDepth;
+    return this;
+  }
+
+  public int getMinRowsPerLeaf() {
+    return minRowsPerLeaf;
+  }
+
+  /**
+   * Fewest rows, or least weight in a weighted build, each child of a split must get. Attributes
+   * leaving a child with fewer are not considered, and a node with no other attribute left is a
+   * leaf. Children no row reaches do not count. 1, the default, allows every split.
+   */
+  public TreeOptions setMinRowsPerLeaf(int minRowsPerLeaf) {
+    if (minRowsPerLeaf < 1) {
+      throw new IllegalArgumentException("minRowsPerLeaf must be at least 1: " + minRowsPerLeaf);
+    }
+    this.minRowsPerLeaf = minRowsPerLeaf;
+    return this;
+  }
+
+  public double getMinGain() {
+    return minGain;
+  }
+
+  /**
+   * Smallest information gain, in bits, of a split. A node whose best split gains less is a leaf.
+   * 0, the default, splits every node that is neither pure nor out of attributes, even on an
+   * attribute that gains nothing.
+   */
+  public TreeOptions setMinGain(double minGain) {
+    if (!(minGain >= 0)) {
+      throw new IllegalArgumentException("minGain must be at least 0: " + minGain);
+    }
+    this.minGain = minGain;
+    return this;
+  }
+
+  public int getMinRowsToSplit() {
+    return minRowsToSplit;
+  }
+
+  /**
+   * Fewest rows, or least weight in a weighted build, a node must have to be split. Nodes with
+   * fewer are leaves. 0, the default, splits nodes of any size.
+   */
+  public TreeOptions setMinRowsToSplit(int minRowsToSplit) {
+    if (minRowsToSplit < 0) {
+      throw new IllegalArgumentException("minRowsToSplit must be at least 0: " + minRowsToSplit);
+    }
+    this.minRowsToSplit = minRowsToSplit;
+    return this;
+  }
+
+  public int getMaxNodes() {
+    return maxNodes;
+  }
+
+  /**
+   * Most nodes of the tree, leaves included. A node whose children would take the tree past it is
+   * a leaf. Nodes are grown depth-first in value order, so the budget goes to the subtrees of the
+   * lower values first. A tree with a maximum grows on the calling thread whatever the
+   * parallelism, which keeps it the same from run to run. 0, the default, sets no maximum.
+   */
+  public TreeOptions setMaxNodes(int maxNodes) {
+    if (maxNodes < 0) {
+      throw new IllegalArgumentException("maxNodes must be at least 0: " + maxNodes);
+    }
+    this.maxNodes = maxNodes;
+    return this;
+  }
+
+  public boolean isMergeEmptyBranches() {
+    return mergeEmptyBranches;
+  }
+
+  /**
+   * Whether the values of a split that no training row takes lead to one leaf shared between
+   * them instead of a leaf each. The leaves predict the same label either way, the majority label
+   * of the split node, so classification is unchanged while high-arity splits of few rows take
+   * far fewer nodes. false by default.
+   */
+  public TreeOptions setMergeEmptyBranches(boolean mergeEmptyBranches) {
+    this.mergeEmptyBranches = mergeEmptyBranches;
+    return this;
+  }
+
+  public Criterion getCriterion() {
+    return criterion;
+  }
+
+  /**
+   * How the candidate splits of a node are scored. GAIN_RATIO divides the gain of a split by the
+   * entropy of the share of rows each branch gets, which stops attributes of many values winning
+   * on many small branches. As in C4.5 it only compares the candidates gaining at least the
+   * average, so a tiny branch entropy cannot lift a useless split. INFO_GAIN by default. minGain
+   * applies to the information gain whatever the criterion.
+   */
+  public TreeOptions setCriterion(Criterion criterion) {
+    if (criterion == null) {
+      throw new IllegalArgumentException("criterion must not be null");
+    }
+    this.criterion = criterion;
+    return this;
+  }
+
+  public int getMaxBranches() {
+    return maxBranches;
+  }
+
+  /**
+   * Most children of a split. With a maximum, the values of each candidate attribute are grouped
+   * into at most that many subsets, each child taking one subset: 2 grows binary splits. The
+   * values are ordered by their share of the majority label of the node and cut into the
+   * contiguous subsets leaving the least entropy, which is the best grouping when there are two
+   * labels. Values no row of the node takes go to the subset with the most rows, so no child is
+   * grown without rows. A child whose subset holds several of the values its rows take may split
+   * on the attribute again, so binary splits can still tell every value apart down a path. 0, the
+   * default, grows one child per value and splits on each attribute once per path.
+   */
+  public TreeOptions setMaxBranches(int maxBranches) {
+    if (maxBranches < 0 || maxBranches == 1) {
+      throw new IllegalArgumentException("maxBranches must be 0 or at least 2: " + maxBranches);
+    }
+    this.maxBranches = maxBranches;
+    return this;
+  }
+
+  public TrainingListener getListener() {
+    return listener;
+  }
+
+  /**
+   * Listener receiving the metrics of growing and pruning the tree, e.g. a TrainingMetrics. null,
+   * the default, collects nothing.
+   */
+  public TreeOptions setListener(TrainingListener listener) {
+    this.listener = listener;
+    return this;
+  }
+}
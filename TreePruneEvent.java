@@ -0,0 +1,23 @@
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Flight Recorder event covering one reduced-error pruning of a DecisionTreeImpl.
+ */
+@Name("decisiontree.TreePrune")
+@Label("Tree Prune")
+@Category("Decision Tree")
+@Description("Reduced-error pruning of one decision tree")
+class TreePruneEvent extends jdk.jfr.Event {
+  @Label("Tune Rows")
+  @Description("Tune rows routed through the tree")
+  int tuneRows;
+
+  @Label("Nodes Before")
+  int nodesBefore;
+
+  @Label("Nodes After")
+  int nodesAfter;
+}
@@ -0,0 +1,64 @@
+import decisiontree.bench.TreeLibrary;
+import java.io.IOException;
+
+/**
+ * Gives the benchmarks in decisiontree.bench access to the tree classes of the default package.
+ */
+public class BenchmarkBridge implements TreeLibrary {
+
+  @Override
+  public Object load(String file, int threads) throws IOException {
+    return new DataSetLoader(threads).load(file);
+  }
+
+  @Override
+  public Object synthetic(int rows, int attributes, long seed) {
+    return generator(rows, attributes, seed).generate();
+  }
+
+  @Override
+  public void writeSynthetic(int rows, int attributes, long seed, String file)
+      throws IOException {
+    generator(rows, attributes, seed).write(file);
+  }
+
+  private static DataSetGenerator generator(int rows, int attributes, long seed) {
+    return new DataSetGenerator().setRows(rows).setAttributes(attributes).setArity(2, 8)
+        .setDepth(4).setSeed(seed);
+  }
+
+  @Override
+  public int size(Object dataSet) {
+    return ((DataSet) dataSet).size();
+  }
+
+  @Override
+  public Object train(Object dataSet, int parallelism) {
+    return new DecisionTreeImpl((DataSet) dataSet, new TreeOptions().setParallelism(parallelism));
+  }
+
+  @Override
+  public void prune(Object tree, Object tune) {
+    ((DecisionTreeImpl) tree).prune((DataSet) tune);
+  }
+
+  @Override
+  public double[] rootInfoGains(Object dataSet) {
+    return new DecisionTreeImpl().rootInfoGains((DataSet) dataSet);
+  }
+
+  @Override
+  public int classify(Object tree, Object dataSet, int row) {
+    return ((DecisionTreeImpl) tree).classifyCode(((DataSet) dataSet).getInstance(row));
+  }
+
+  @Override
+  public int walkClassify(Object tree, Object dataSet, int row) {
+    return ((DecisionTreeImpl) tree).walkClassifyCode(((DataSet) dataSet).getInstance(row));
+  }
+
+  @Override
+  public int[] classifyAll(Object tree, Object dataSet) {
+    return ((DecisionTreeImpl) tree).classifyAll((DataSet) dataSet);
+  }
+}
@@ -0,0 +1,37 @@
+package decisiontree.bench;
+
+import java.io.IOException;
+import org.openjdk.jmh.Main;
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.CommandLineOptionException;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Runs the benchmarks with the usual JMH command line, writing the results as JSON to
+ * jmh-result.json unless -rf/-rff say otherwise. Listing and help requests go to JMH's own main.
+ */
+public final class BenchmarkMain {
+  private BenchmarkMain() {
+  }
+
+  public static void main(String[] args) throws CommandLineOptionException, IOException, RunnerException {
+    CommandLineOptions commandLine = new CommandLineOptions(args);
+    if (commandLine.shouldHelp() || commandLine.shouldList() || commandLine.shouldListWithParams()
+        || commandLine.shouldListProfilers() || commandLine.shouldListResultFormats()) {
+      Main.main(args);
+      return;
+    }
+    OptionsBuilder options = new OptionsBuilder();
+    options.parent(commandLine);
+    if (!commandLine.getResultFormat().hasValue()) {
+      options.resultFormat(ResultFormatType.JSON);
+    }
+    if (!commandLine.getResult().hasValue()) {
+      options.result("jmh-result.json");
+    }
+    new Runner(options.build()).run();
+  }
+}
@@ -0,0 +1,75 @@
+package decisiontree.bench;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Classifying the test set one row at a time with classify, and all at once with classifyAll.
+ * nodeWalk classifies one row at a time by walking the tree's node objects, the way classify did
+ * before the tree was compiled.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = "-Xmx16g")
+public class ClassifyBenchmark {
+  @Param({"examples", "prune", "synthetic-1000000x200", "synthetic-10000000x20"})
+  public String dataset;
+
+  private Object test;
+  private Object tree;
+  private int rows;
+  private int row;
+
+  @Setup
+  public void setUp() throws IOException {
+    Object[] sets = Datasets.open(dataset);
+    tree = Datasets.LIBRARY.train(sets[0], Runtime.getRuntime().availableProcessors());
+    test = sets[2];
+    rows = Datasets.LIBRARY.size(test);
+  }
+
+  /**
+   * One row per operation, cycling through the test set.
+   */
+  @Benchmark
+  public int classify() {
+    if (++row == rows) {
+      row = 0;
+    }
+    return Datasets.LIBRARY.classify(tree, test, row);
+  }
+
+  /**
+   * One row per operation like classify, walking the node objects.
+   */
+  @Benchmark
+  public int nodeWalk() {
+    if (++row == rows) {
+      row = 0;
+    }
+    return Datasets.LIBRARY.walkClassify(tree, test, row);
+  }
+
+  /**
+   * The whole test set per operation.
+   */
+  @Benchmark
+  @OutputTimeUnit(TimeUnit.MILLISECONDS)
+  public int[] classifyAll() {
+    return Datasets.LIBRARY.classifyAll(tree, test);
+  }
+}
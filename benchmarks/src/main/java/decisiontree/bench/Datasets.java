@@ -0,0 +1,82 @@
+package decisiontree.bench;
+
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * Resolves the dataset parameter of the benchmarks. Accepted names:
+ *
+ * <ul>
+ * <li>prune: prune_train.txt, prune_tune.txt and prune_test.txt of the repository</li>
+ * <li>examples: examples1.txt to train, examples3.txt to tune and examples2.txt to test, as HW3
+ * runs them in the pruning modes</li>
+ * <li>examples1 to examples4: the bundled file, used as train, tune and test set</li>
+ * <li>synthetic-ROWSxATTRIBUTES: a train set drawn by DataSetGenerator, with tune and test sets
+ * a tenth of its size</li>
+ * <li>file:PATH: a data file, e.g. written by DataSetGenerator, used as train, tune and test
+ * set</li>
+ * </ul>
+ *
+ * Bundled files are looked up in the directory named by the benchmark.data.dir system property,
+ * the repository root by default when running from this module.
+ */
+final class Datasets {
+  static final TreeLibrary LIBRARY = TreeLibrary.load();
+
+  private Datasets() {
+  }
+
+  /**
+   * The train, tune and test sets of the dataset.
+   */
+  static Object[] open(String name) throws IOException {
+    if (name.startsWith("synthetic-")) {
+      int[] shape = syntheticShape(name);
+      int evaluationRows = Math.max(1, shape[0] / 10);
+      return new Object[] {LIBRARY.synthetic(shape[0], shape[1], 1),
+          LIBRARY.synthetic(evaluationRows, shape[1], 2),
+          LIBRARY.synthetic(evaluationRows, shape[1], 3)};
+    } else if (name.equals("prune")) {
+      return new Object[] {LIBRARY.load(bundled("prune_train.txt"), 1),
+          LIBRARY.load(bundled("prune_tune.txt"), 1), LIBRARY.load(bundled("prune_test.txt"), 1)};
+    } else if (name.equals("examples")) {
+      return new Object[] {LIBRARY.load(bundled("examples1.txt"), 1),
+          LIBRARY.load(bundled("examples3.txt"), 1), LIBRARY.load(bundled("examples2.txt"), 1)};
+    }
+    Object set = LIBRARY.load(file(name), Runtime.getRuntime().availableProcessors());
+    return new Object[] {set, set, set};
+  }
+
+  /**
+   * Path of the training file of the dataset. Synthetic training sets are written to a temporary
+   * file deleted when the JVM exits.
+   */
+  static String file(String name) throws IOException {
+    if (name.startsWith("synthetic-")) {
+      int[] shape = syntheticShape(name);
+      File file = File.createTempFile(name, ".txt");
+      file.deleteOnExit();
+      LIBRARY.writeSynthetic(shape[0], shape[1], 1, file.getPath());
+      return file.getPath();
+    } else if (name.startsWith("file:")) {
+      return name.substring("file:".length());
+    } else if (name.equals("prune")) {
+      return bundled("prune_train.txt");
+    } else if (name.equals("examples")) {
+      return bundled("examples1.txt");
+    }
+    return bundled(name + ".txt");
+  }
+
+  private static String bundled(String file) {
+    return new File(System.getProperty("benchmark.data.dir", ".."), file).getPath();
+  }
+
+  private static int[] syntheticShape(String name) {
+    String[] shape = name.substring("synthetic-".length()).split("x");
+    if (shape.length != 2) {
+      throw new IllegalArgumentException("Expected synthetic-ROWSxATTRIBUTES: " + name);
+    }
+    return new int[] {Integer.parseInt(shape[0]), Integer.parseInt(shape[1])};
+  }
+}
@@ -0,0 +1,44 @@
+package decisiontree.bench;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Parsing a data file into a DataSet, the work of HW3.createDataSet.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class LoadBenchmark {
+  @Param({"examples", "prune", "synthetic-1000000x200", "synthetic-10000000x20"})
+  public String dataset;
+
+  @Param({"1", "8"})
+  public int threads;
+
+  private String file;
+
+  @Setup
+  public void setUp() throws IOException {
+    file = Datasets.file(dataset);
+  }
+
+  @Benchmark
+  public Object createDataSet() throws IOException {
+    return Datasets.LIBRARY.load(file, threads);
+  }
+}
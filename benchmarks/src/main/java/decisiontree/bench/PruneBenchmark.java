@@ -0,0 +1,53 @@
+package decisiontree.bench;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Reduced-error pruning of a freshly grown tree with pruneTree. Each invocation prunes a new tree,
+ * grown outside of the measurement.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(value = 1, jvmArgsAppend = "-Xmx16g")
+public class PruneBenchmark {
+  @Param({"examples", "prune", "synthetic-1000000x200"})
+  public String dataset;
+
+  private Object train;
+  private Object tune;
+  private Object tree;
+
+  @Setup
+  public void setUp() throws IOException {
+    Object[] sets = Datasets.open(dataset);
+    train = sets[0];
+    tune = sets[1];
+  }
+
+  @Setup(Level.Invocation)
+  public void growTree() {
+    tree = Datasets.LIBRARY.train(train, 1);
+  }
+
+  @Benchmark
+  public Object pruneTree() {
+    Datasets.LIBRARY.prune(tree, tune);
+    return tree;
+  }
+}
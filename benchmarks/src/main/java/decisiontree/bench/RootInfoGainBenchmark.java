@@ -0,0 +1,41 @@
+package decisiontree.bench;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Scoring the root attributes with rootInfoGain, which always runs on the calling thread.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = "-Xmx16g")
+public class RootInfoGainBenchmark {
+  @Param({"examples", "prune", "synthetic-1000000x200", "synthetic-10000000x20"})
+  public String dataset;
+
+  private Object train;
+
+  @Setup
+  public void setUp() throws IOException {
+    train = Datasets.open(dataset)[0];
+  }
+
+  @Benchmark
+  public double[] rootInfoGain() {
+    return Datasets.LIBRARY.rootInfoGains(train);
+  }
+}
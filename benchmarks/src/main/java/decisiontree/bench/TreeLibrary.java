@@ -0,0 +1,55 @@
+package decisiontree.bench;
+
+import java.io.IOException;
+
+/**
+ * Entry points of the decision tree code used by the benchmarks. The tree classes live in the
+ * default package, which a named package cannot import, so they are reached through this
+ * interface implemented by BenchmarkBridge. Data sets and trees are passed around as opaque
+ * objects.
+ */
+public interface TreeLibrary {
+
+  /**
+   * The bridge implementation, loaded once by name.
+   */
+  static TreeLibrary load() {
+    try {
+      return (TreeLibrary) Class.forName("BenchmarkBridge").getDeclaredConstructor().newInstance();
+    } catch (ReflectiveOperationException e) {
+      throw new IllegalStateException("BenchmarkBridge is missing from the build", e);
+    }
+  }
+
+  /**
+   * Parse a data file with the given number of loader threads.
+   */
+  Object load(String file, int threads) throws IOException;
+
+  /**
+   * Data set drawn by DataSetGenerator with a planted tree and 10% label noise.
+   */
+  Object synthetic(int rows, int attributes, long seed);
+
+  /**
+   * Stream the data set synthetic would return to a file in the text format read by load.
+   */
+  void writeSynthetic(int rows, int attributes, long seed, String file) throws IOException;
+
+  int size(Object dataSet);
+
+  Object train(Object dataSet, int parallelism);
+
+  void prune(Object tree, Object tune);
+
+  double[] rootInfoGains(Object dataSet);
+
+  int classify(Object tree, Object dataSet, int row);
+
+  /**
+   * Classify a row by walking the tree's node objects instead of its compiled arrays.
+   */
+  int walkClassify(Object tree, Object dataSet, int row);
+
+  int[] classifyAll(Object tree, Object dataSet);
+}
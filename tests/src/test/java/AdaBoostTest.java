@@ -0,0 +1,63 @@
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+
+import java.util.SplittableRandom;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Weighted rows against rows repeated as many times as they weigh, and boosting against its trees.
+ */
+class AdaBoostTest {
+  @Test
+  void wholeWeightsGrowTheTreeOfRepeatedRows() {
+    for (long seed = 0; seed < 200; seed++) {
+      DataSet set = TestData.random(seed);
+      SplittableRandom random = new SplittableRandom(seed);
+      DataSet repeated = set.emptyCopy();
+      int[] codes = new int[set.attributes.size() + 1];
+      for (int row = 0; row < set.size(); row++) {
+        int weight = 1 + random.nextInt(4);
+        set.setWeight(row, weight);
+        for (int i = 0; i < codes.length; i++) {
+          codes[i] = set.getAttributeCode(row, i);
+        }
+        for (int copy = 0; copy < weight; copy++) {
+          repeated.addCodes(codes);
+        }
+      }
+      assertEquals(ReferenceTree.grow(repeated, null).print(),
+          TestData.printed(new DecisionTreeImpl(set)), "seed " + seed);
+    }
+  }
+
+  @Test
+  void unitWeightsGrowTheUnweightedTree() {
+    for (long seed = 0; seed < 200; seed++) {
+      String unweighted = TestData.printed(new DecisionTreeImpl(TestData.random(seed)));
+      assertEquals(unweighted,
+          TestData.printed(new DecisionTreeImpl(TestData.unitWeights(TestData.random(seed)))),
+          "seed " + seed);
+    }
+  }
+
+  @Test
+  void boostingVotesItsTreesAndRestoresTheWeights() {
+    DataSet train = TestData.synthetic(3000, 10, 12);
+    AdaBoost boost = new AdaBoost(train, 8, new TreeOptions().setMaxDepth(2));
+    assertFalse(train.isWeighted());
+    DataSet test = TestData.synthetic(1000, 10, 13);
+    int[] classifications = new int[test.size()];
+    for (int row = 0; row < test.size(); row++) {
+      Instance instance = test.getInstance(row);
+      double[] votes = new double[train.labels.size()];
+      for (int round = 0; round < boost.size(); round++) {
+        votes[boost.getTree(round).classifyCode(instance)] += boost.getAlpha(round);
+      }
+      classifications[row] = boost.classifyCode(instance);
+      assertEquals(DecisionTreeImpl.getMostCommonLabel(votes,
+          DecisionTreeImpl.labelTieOrder(train.labels)), classifications[row], "row " + row);
+    }
+    assertArrayEquals(classifications, boost.classifyAll(test));
+  }
+}
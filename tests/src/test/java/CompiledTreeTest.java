@@ -0,0 +1,52 @@
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.io.IOException;
+import org.junit.jupiter.api.Test;
+
+/**
+ * The compiled flat-array tree against a walk of the node objects it was compiled from.
+ */
+class CompiledTreeTest {
+  /**
+   * classify and classifyAll of the compiled tree give the label the node walk reaches, row by row.
+   */
+  static void assertSameAsWalk(DecisionTreeImpl tree, DataSet set) {
+    int[] walked = new int[set.size()];
+    for (int row = 0; row < set.size(); row++) {
+      Instance instance = set.getInstance(row);
+      walked[row] = tree.walkClassifyCode(instance);
+      assertEquals(walked[row], tree.classifyCode(instance), "row " + row);
+    }
+    assertArrayEquals(walked, tree.classifyAll(set));
+  }
+
+  @Test
+  void bundledFiles() throws IOException {
+    for (String file : new String[] {"examples1", "examples2", "examples3", "examples4"}) {
+      DataSet set = new DataSetLoader().load(file + ".txt");
+      assertSameAsWalk(new DecisionTreeImpl(set), set);
+    }
+    DataSet train = new DataSetLoader().load("prune_train.txt");
+    assertSameAsWalk(new DecisionTreeImpl(train), new DataSetLoader().load("prune_test.txt"));
+  }
+
+  @Test
+  void sharedAndLimitedBranches() {
+    DataSet set = TestData.synthetic(3000, 12, 7);
+    TreeOptions[] options = {new TreeOptions(), new TreeOptions().setMaxBranches(2),
+        new TreeOptions().setMergeEmptyBranches(true).setMinRowsPerLeaf(20),
+        new TreeOptions().setMaxDepth(3), new TreeOptions().setParallelism(4)};
+    for (TreeOptions option : options) {
+      assertSameAsWalk(new DecisionTreeImpl(set, option), set);
+    }
+  }
+
+  @Test
+  void numericSplits() {
+    DataSet train = TestData.numeric(1500, 1);
+    DecisionTreeImpl tree = new DecisionTreeImpl(train);
+    assertSameAsWalk(tree, train);
+    assertSameAsWalk(tree, TestData.numeric(500, 2));
+  }
+}
@@ -0,0 +1,46 @@
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.io.IOException;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Trees cut back from a grown tree against trees grown with the limits, and the search against
+ * evaluating each of its settings on its own.
+ */
+class CrossValidatorTest {
+  @Test
+  void truncatedTreesAreGrownWithTheirLimits() throws IOException {
+    for (String file : DecisionTreeImplTest.BUNDLED) {
+      DataSet set = new DataSetLoader().load(file);
+      DecisionTreeImpl full = new DecisionTreeImpl(set);
+      for (int maxDepth : new int[] {0, 1, 2, 3, 5}) {
+        for (double minGain : new double[] {0, 0.01, 0.05, 0.2}) {
+          DecisionTreeImpl grown = new DecisionTreeImpl(set,
+              new TreeOptions().setMaxDepth(maxDepth).setMinGain(minGain));
+          DecisionTreeImpl truncated = full.truncated(maxDepth, minGain);
+          assertEquals(TestData.printed(grown), TestData.printed(truncated),
+              file + " maxDepth " + maxDepth + " minGain " + minGain);
+          CompiledTreeTest.assertSameAsWalk(truncated, set);
+        }
+      }
+    }
+  }
+
+  @Test
+  void searchScoresEachSettingAsEvaluateDoes() {
+    DataSet set = TestData.synthetic(2000, 8, 14);
+    List<CrossValidator.Result> results = new CrossValidator(set, 4).setSeed(3).setParallelism(3)
+        .setMaxDepths(0, 2).setMinGains(0, 0.05).setMinRowsPerLeaf(1, 5).setPrune(false, true)
+        .search();
+    assertEquals(16, results.size());
+    CrossValidator sequential = new CrossValidator(set, 4).setSeed(3).setParallelism(1);
+    for (CrossValidator.Result result : results) {
+      CrossValidator.Result evaluated =
+          sequential.evaluate(result.getOptions(), result.isPruned());
+      assertArrayEquals(evaluated.getFoldAccuracies(), result.getFoldAccuracies(),
+          result.toString());
+    }
+  }
+}
@@ -0,0 +1,99 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * The memory-mapped loader against the line by line String parsing it replaced.
+ */
+class DataSetLoaderTest {
+  private static final int[] THREADS = {1, 2, 3, 4, 7};
+
+  @TempDir
+  Path directory;
+
+  static void assertSameRows(DataSet expected, DataSet actual) {
+    assertTrue(expected.sameMetaValues(actual));
+    assertEquals(expected.size(), actual.size());
+    for (int row = 0; row < expected.size(); row++) {
+      for (int i = 0; i < expected.attributes.size(); i++) {
+        if (expected.isNumeric(i)) {
+          assertEquals(expected.getNumericValue(row, i), actual.getNumericValue(row, i),
+              "row " + row + " attribute " + i);
+        } else {
+          assertEquals(expected.getAttributeCode(row, i), actual.getAttributeCode(row, i),
+              "row " + row + " attribute " + i);
+        }
+      }
+      assertEquals(expected.getLabelCode(row), actual.getLabelCode(row), "row " + row);
+    }
+  }
+
+  private static DataSet parse(Path file) throws IOException {
+    return TestData.parse(Files.readAllLines(file).toArray(new String[0]));
+  }
+
+  private static void assertLoadsAsParsed(Path file) throws IOException {
+    DataSet parsed = parse(file);
+    for (int threads : THREADS) {
+      assertSameRows(parsed, new DataSetLoader(threads).load(file.toString()));
+    }
+  }
+
+  @Test
+  void bundledFiles() throws IOException {
+    for (String file : new String[] {"examples1.txt", "examples2.txt", "examples3.txt",
+        "examples4.txt", "prune_train.txt", "prune_tune.txt", "prune_test.txt"}) {
+      assertLoadsAsParsed(Path.of(file));
+    }
+  }
+
+  @Test
+  void chunkedFile() throws IOException {
+    // several MB, so that every thread count cuts the data section into chunks
+    Path file = directory.resolve("synthetic.txt");
+    new DataSetGenerator().setRows(200000).setAttributes(12).setArity(2, 6).setLabels(3)
+        .setDepth(4).setNoise(0.1).setSeed(5).write(file.toString());
+    assertLoadsAsParsed(file);
+  }
+
+  @Test
+  void numericValues() throws IOException {
+    List<String> lines = new ArrayList<String>();
+    lines.add("// numeric values in the forms Float.parseFloat reads");
+    lines.add("%%,yes,no");
+    lines.add("##,x,numeric");
+    lines.add("##,color,red,green");
+    lines.add("##,y,numeric");
+    String[] values = {"0", "-0", "1", "-1", "3.25", "-17.5", "1e3", "2.5E-4", "+8", ".5", "7.",
+        "123456789", "0.1", "3.4028235E38", "1.0E-45", "16777217", "0.30000001192092896"};
+    for (int i = 0; i < values.length; i++) {
+      for (int j = 0; j < values.length; j++) {
+        lines.add(values[i] + "," + (j % 2 == 0 ? "red" : "green") + "," + values[j] + ","
+            + ((i + j) % 3 == 0 ? "yes" : "no"));
+      }
+    }
+    Path file = directory.resolve("numeric.txt");
+    Files.write(file, lines);
+    assertLoadsAsParsed(file);
+  }
+
+  @Test
+  void scannedBlocksHoldTheLoadedRows() throws IOException {
+    Path file = directory.resolve("blocks.txt");
+    new DataSetGenerator().setRows(5000).setAttributes(6).setSeed(3).write(file.toString());
+    DataSet loaded = new DataSetLoader(1).load(file.toString());
+    for (long blockBytes : new long[] {1, 1000, 40000, 1L << 30}) {
+      List<DataSet> blocks = new ArrayList<DataSet>();
+      DataSet scanned = new DataSetLoader(2).scan(file.toString(), blockBytes, blocks::add);
+      scanned.appendAll(blocks);
+      assertSameRows(loaded, scanned);
+    }
+  }
+}
@@ -0,0 +1,21 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.List;
+import org.junit.jupiter.api.Test;
+
+/**
+ * DataSet columns and the data file format.
+ */
+class DataSetTest {
+  @Test
+  void soleValueNumericDeclaresANumericAttribute() {
+    DataSet set = TestData.parse("%%,Y,N", "##,A,numeric", "##,B,numeric,other", "1.5,other,Y");
+    assertTrue(set.isNumeric(0));
+    assertFalse(set.isNumeric(1));
+    assertEquals(List.of("numeric", "other"), set.attributeValues.get("B"));
+    assertEquals(1.5f, set.getNumericValue(0, 0));
+    assertEquals(1, set.getAttributeCode(0, 1));
+  }
+}
@@ -0,0 +1,56 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.io.IOException;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Trees and root gains of DecisionTreeImpl against ReferenceTree, and parallel builds against
+ * sequential ones.
+ */
+class DecisionTreeImplTest {
+  static final String[] BUNDLED = {"examples1.txt", "examples2.txt", "examples3.txt",
+      "examples4.txt", "prune_train.txt"};
+
+  private static void assertSameAsReference(DataSet set, String message) {
+    assertEquals(ReferenceTree.grow(set, null).print(),
+        TestData.printed(new DecisionTreeImpl(set)), message);
+    assertEquals(new ReferenceTree(set).rootInfoGain(set),
+        TestData.printed(() -> new DecisionTreeImpl().rootInfoGain(set)), message);
+  }
+
+  @Test
+  void bundledFiles() throws IOException {
+    for (String file : BUNDLED) {
+      assertSameAsReference(new DataSetLoader().load(file), file);
+    }
+  }
+
+  @Test
+  void randomData() {
+    for (long seed = 0; seed < 500; seed++) {
+      assertSameAsReference(TestData.random(seed), "seed " + seed);
+    }
+  }
+
+  @Test
+  void generatedData() {
+    for (int seed = 0; seed < 40; seed++) {
+      DataSet set = new DataSetGenerator().setRows(50 + 40 * seed).setAttributes(2 + seed % 7)
+          .setArity(2, 2 + seed % 4).setLabels(2 + seed % 3).setDepth(1 + seed % 3)
+          .setNoise(seed % 5 * 0.1).setSeed(seed).generate();
+      assertSameAsReference(set, "seed " + seed);
+    }
+  }
+
+  @Test
+  void parallelBuildsGrowTheSequentialTree() {
+    DataSet set = TestData.synthetic(20000, 16, 3);
+    String sequential = TestData.printed(new DecisionTreeImpl(set));
+    for (int parallelism : new int[] {2, 4}) {
+      TreeOptions options = new TreeOptions().setParallelism(parallelism)
+          .setParallelSubtreeRows(100).setParallelScoringRows(1000);
+      assertEquals(sequential, TestData.printed(new DecisionTreeImpl(set, options)),
+          "parallelism " + parallelism);
+    }
+  }
+}
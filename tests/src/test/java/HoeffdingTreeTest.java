@@ -0,0 +1,49 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * HoeffdingTree settings, and snapshots against the live tree.
+ */
+class HoeffdingTreeTest {
+  private static HoeffdingTree emptyTree() {
+    return new HoeffdingTree(TestData.parse("%%,Y,N", "##,A,0,1", "0,Y"));
+  }
+
+  @Test
+  void rejectsTieThresholdsBelowZeroOrNotFinite() {
+    emptyTree().setTieThreshold(0).setTieThreshold(0.05);
+    for (double tieThreshold : new double[] {-0.01, Double.NaN, Double.POSITIVE_INFINITY}) {
+      assertThrows(IllegalArgumentException.class, () -> emptyTree().setTieThreshold(tieThreshold));
+    }
+  }
+
+  @Test
+  void rejectsDeltaOutsideZeroToOne() {
+    for (double delta : new double[] {0, 1, Double.NaN}) {
+      assertThrows(IllegalArgumentException.class, () -> emptyTree().setDelta(delta));
+    }
+  }
+
+  @Test
+  void snapshotsClassifyAsTheLiveTree() {
+    DataSet stream = TestData.synthetic(60000, 8, 15);
+    DataSet test = TestData.synthetic(2000, 8, 16);
+    HoeffdingTree tree = new HoeffdingTree(stream).setGracePeriod(50).setDelta(1e-3);
+    for (int row = 0; row < stream.size(); row++) {
+      tree.learn(stream.getInstance(row));
+      if ((row + 1) % 20000 == 0) {
+        DecisionTreeImpl snapshot = tree.snapshot();
+        for (int testRow = 0; testRow < test.size(); testRow++) {
+          Instance instance = test.getInstance(testRow);
+          assertEquals(tree.classifyCode(instance), snapshot.classifyCode(instance),
+              "row " + testRow);
+        }
+        CompiledTreeTest.assertSameAsWalk(snapshot, test);
+      }
+    }
+    assertTrue(tree.getLeafCount() > 1);
+  }
+}
@@ -0,0 +1,71 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.IOException;
+import java.util.SplittableRandom;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Trees updated batch by batch against trees rebuilt from every row seen so far.
+ */
+class IncrementalDecisionTreeTest {
+  /**
+   * Feeds set to a tree in batches of random sizes, checking it after each one.
+   */
+  private static void assertSameAsRebuilt(DataSet set, long seed) {
+    SplittableRandom random = new SplittableRandom(seed);
+    int seen = 1 + random.nextInt(Math.max(1, set.size() - 1));
+    IncrementalDecisionTree tree = new IncrementalDecisionTree(TestData.slice(set, 0, seen));
+    while (true) {
+      DecisionTreeImpl rebuilt = new DecisionTreeImpl(TestData.slice(set, 0, seen));
+      assertEquals(TestData.printed(rebuilt), TestData.printed(tree), seen + " rows");
+      assertEquals(seen, tree.size());
+      if (seen == set.size()) {
+        break;
+      }
+      int next = Math.min(set.size(), seen + 1 + random.nextInt(Math.max(1, set.size() / 5)));
+      tree.update(TestData.slice(set, seen, next));
+      seen = next;
+    }
+    CompiledTreeTest.assertSameAsWalk(tree.getTree(), set);
+  }
+
+  @Test
+  void bundledFiles() throws IOException {
+    for (String file : DecisionTreeImplTest.BUNDLED) {
+      assertSameAsRebuilt(new DataSetLoader().load(file), 99);
+    }
+  }
+
+  @Test
+  void generatedData() {
+    for (int seed = 0; seed < 40; seed++) {
+      SplittableRandom random = new SplittableRandom(seed);
+      DataSet set = new DataSetGenerator().setRows(random.nextInt(2, 5000))
+          .setAttributes(random.nextInt(1, 10)).setArity(1, random.nextInt(1, 5))
+          .setLabels(random.nextInt(1, 4)).setDepth(random.nextInt(0, 5))
+          .setNoise(random.nextDouble() * 0.3).setSeed(seed).generate();
+      assertSameAsRebuilt(set, seed);
+    }
+  }
+
+  @Test
+  void rowByRow() {
+    DataSet set = TestData.synthetic(300, 6, 4);
+    IncrementalDecisionTree tree = new IncrementalDecisionTree(TestData.slice(set, 0, 1));
+    for (int row = 1; row < set.size(); row++) {
+      tree.update(TestData.slice(set, row, row + 1));
+    }
+    assertEquals(TestData.printed(new DecisionTreeImpl(set)), TestData.printed(tree));
+  }
+
+  @Test
+  void otherMetaValuesAreRejected() {
+    IncrementalDecisionTree tree =
+        new IncrementalDecisionTree(TestData.parse("%%,Y,N", "##,A,0,1", "0,Y", "1,N"));
+    assertThrows(IllegalArgumentException.class,
+        () -> tree.update(TestData.parse("%%,N,Y", "##,A,0,1", "0,Y")));
+    assertThrows(IllegalArgumentException.class,
+        () -> new IncrementalDecisionTree(TestData.numeric(10, 1)));
+  }
+}
@@ -0,0 +1,111 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.List;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Split scores from the n log2 n table against the ratio sums the tree was first written with.
+ */
+class InfoGainTest {
+  // Ag1 gains nothing, and its table terms cancel to a few ulps below 0
+  private static final String[] ZERO_GAIN = {
+      "%%,Y,N",
+      "##,Am0,0,1",
+      "##,Ag1,0,1",
+      "##,Ae2,0,1",
+      "1,1,0,N",
+      "0,0,1,Y",
+      "1,0,1,N",
+      "1,1,1,Y",
+      "1,1,0,N",
+      "1,1,0,N",
+      "1,0,0,N",
+      "0,0,1,N",
+  };
+
+  // Ar0 and At1 gain the same at the root; the ratio sums round At1 ahead, the table does not
+  private static final String[] TIED_ROOT = {
+      "%%,Y,N",
+      "##,Ar0,0,1,2",
+      "##,At1,0,1,2",
+      "##,An2,0,1",
+      "1,0,0,N",
+      "2,0,1,Y",
+      "2,2,1,Y",
+      "1,2,0,Y",
+      "2,1,1,Y",
+      "2,2,1,Y",
+      "1,1,1,Y",
+      "0,0,0,N",
+      "1,1,1,N",
+      "0,1,0,Y",
+  };
+
+  private static final String TIED_ROOT_TREE = String.join("\n",
+      "ROOT {At1?}",
+      "    0 {Ar0?}",
+      "        0 (N)",
+      "        1 (N)",
+      "        2 (Y)",
+      "    1 {Ar0?}",
+      "        0 (Y)",
+      "        1 {An2?}",
+      "            0 (Y)",
+      "            1 (Y)",
+      "        2 (Y)",
+      "    2 (Y)",
+      "");
+
+  @Test
+  void zeroGainPrintsAsZero() {
+    DataSet set = TestData.parse(ZERO_GAIN);
+    assertEquals(0.0, new DecisionTreeImpl().rootInfoGains(set)[1]);
+    assertEquals("Am0 0.07376\nAg1 0.00000\nAe2 0.31128\n",
+        TestData.printed(() -> new DecisionTreeImpl().rootInfoGain(set)));
+  }
+
+  @Test
+  void weightedZeroGainIsZero() {
+    DataSet set = TestData.unitWeights(TestData.parse(ZERO_GAIN));
+    assertEquals(0.0, new DecisionTreeImpl().rootInfoGains(set)[1]);
+  }
+
+  @Test
+  void tableGainsMatchRatioSums() {
+    DataSet set = TestData.parse(TIED_ROOT);
+    double[] gains = new DecisionTreeImpl().rootInfoGains(set);
+    assertEquals(0.28129, gains[0], 5e-6);
+    assertEquals(gains[0], gains[1], 1e-12);
+    assertEquals(0.09128, gains[2], 5e-6);
+  }
+
+  @Test
+  void tiedGainsGoTheWayTheRatioSumsRound() {
+    assertEquals(TIED_ROOT_TREE, TestData.printed(new DecisionTreeImpl(TestData.parse(TIED_ROOT))));
+  }
+
+  @Test
+  void weightedTiesGoTheSameWay() {
+    DataSet set = TestData.unitWeights(TestData.parse(TIED_ROOT));
+    assertEquals(TIED_ROOT_TREE, TestData.printed(new DecisionTreeImpl(set)));
+  }
+
+  @Test
+  void equalCountsGoToTheEarlierCandidate() {
+    int[][] split = {{3, 1}, {1, 3}};
+    int[][][] counts = {split, {{2, 2}, {2, 2}}, split};
+    List<String> names = List.of("B", "A", "C");
+    assertEquals(0, DecisionTreeImpl.findMaxImporantAttribute(counts, new int[] {0, 1, 2},
+        new int[] {4, 4}, 8, names));
+    assertEquals(2, DecisionTreeImpl.findMaxImporantAttribute(counts, new int[] {1, 2},
+        new int[] {4, 4}, 8, names));
+  }
+
+  @Test
+  void noUsefulAttributeGoesToTheAlphabeticallyFirst() {
+    int[][] useless = {{2, 2}, {2, 2}};
+    int[][][] counts = {useless, useless, useless};
+    assertEquals(1, DecisionTreeImpl.findMaxImporantAttribute(counts, new int[] {0, 1, 2},
+        new int[] {4, 4}, 8, List.of("B", "A", "C")));
+  }
+}
@@ -0,0 +1,81 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Trees saved to a model file and mapped back against the trees that saved them.
+ */
+class ModelFileTest {
+  @TempDir
+  Path directory;
+
+  private MappedModel saveAndMap(DecisionTreeImpl tree) throws IOException {
+    String file = directory.resolve("tree.model").toString();
+    tree.save(file);
+    MappedModel model = ModelFile.map(file);
+    assertTrue(model.isWellFormed());
+    return model;
+  }
+
+  /**
+   * The mapped model gives every row the label the tree gives it, by Instance, row and codes.
+   */
+  private static void assertSameAsTree(DecisionTreeImpl tree, MappedModel model, DataSet set) {
+    int[] codes = new int[set.attributes.size()];
+    for (int row = 0; row < set.size(); row++) {
+      Instance instance = set.getInstance(row);
+      int expected = tree.classifyCode(instance);
+      assertEquals(tree.classify(instance), model.classify(instance), "row " + row);
+      assertEquals(expected, model.classifyCode(set, row), "row " + row);
+      for (int i = 0; i < codes.length; i++) {
+        codes[i] = set.isNumeric(i) ? Float.floatToIntBits(set.getNumericValue(row, i))
+            : set.getAttributeCode(row, i);
+      }
+      assertEquals(expected, model.classifyCode(codes), "row " + row);
+    }
+  }
+
+  @Test
+  void bundledFiles() throws IOException {
+    DataSetLoader loader = new DataSetLoader();
+    DataSet train = loader.load("prune_train.txt");
+    DecisionTreeImpl tree = new DecisionTreeImpl(train);
+    MappedModel model = saveAndMap(tree);
+    assertEquals(train.labels, model.getLabels());
+    assertEquals(train.attributes, model.getAttributes());
+    assertEquals(train.attributeValues, model.getAttributeValues());
+    assertSameAsTree(tree, model, loader.load("prune_test.txt"));
+
+    DecisionTreeImpl pruned = new DecisionTreeImpl(train, loader.load("prune_tune.txt"));
+    assertSameAsTree(pruned, saveAndMap(pruned), loader.load("prune_test.txt"));
+    DataSet examples = loader.load("examples1.txt");
+    DecisionTreeImpl small = new DecisionTreeImpl(examples);
+    assertSameAsTree(small, saveAndMap(small), loader.load("examples2.txt"));
+  }
+
+  @Test
+  void generatedData() throws IOException {
+    DataSet set = TestData.synthetic(5000, 10, 11);
+    DecisionTreeImpl tree = new DecisionTreeImpl(set, new TreeOptions().setMaxBranches(2));
+    assertSameAsTree(tree, saveAndMap(tree), set);
+  }
+
+  @Test
+  void numericSplits() throws IOException {
+    DecisionTreeImpl tree = new DecisionTreeImpl(TestData.numeric(1500, 1));
+    assertSameAsTree(tree, saveAndMap(tree), TestData.numeric(500, 2));
+  }
+
+  @Test
+  void otherFilesAreRejected() throws IOException {
+    Path file = directory.resolve("data.model");
+    Files.copy(Path.of("examples1.txt"), file);
+    assertThrows(IOException.class, () -> ModelFile.map(file.toString()));
+  }
+}
@@ -0,0 +1,64 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.stream.Stream;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Trees grown from a spill file, level by level, against trees grown in memory.
+ */
+class OutOfCoreTrainerTest {
+  @TempDir
+  Path directory;
+
+  private void assertSameAsInMemory(String file, long memoryBudget, long blockBytes)
+      throws IOException {
+    OutOfCoreTrainer trainer = new OutOfCoreTrainer().setMemoryBudget(memoryBudget)
+        .setBlockBytes(blockBytes).setSpillDirectory(directory.toString());
+    DecisionTreeImpl tree = trainer.train(file);
+    DataSet set = new DataSetLoader().load(file);
+    String message = file + " budget " + memoryBudget + " block " + blockBytes;
+    assertEquals(TestData.printed(new DecisionTreeImpl(set)), TestData.printed(tree), message);
+    CompiledTreeTest.assertSameAsWalk(tree, set);
+    try (Stream<Path> spilled = Files.list(directory)) {
+      assertEquals(0, spilled.filter(path -> path.toString().endsWith(".codes")).count());
+    }
+  }
+
+  @Test
+  void bundledFiles() throws IOException {
+    for (String file : new String[] {"examples1.txt", "examples4.txt", "prune_train.txt"}) {
+      assertSameAsInMemory(file, 256L << 20, 64L << 20);
+      assertSameAsInMemory(file, 1, 100);
+    }
+  }
+
+  @Test
+  void generatedData() throws IOException {
+    for (int seed = 0; seed < 6; seed++) {
+      String file = directory.resolve("synthetic" + seed + ".txt").toString();
+      new DataSetGenerator().setRows(3000 + 2000 * seed).setAttributes(4 + 2 * seed)
+          .setArity(2, 2 + seed).setLabels(2 + seed % 3).setDepth(2 + seed % 4).setNoise(0.05)
+          .setSeed(seed).write(file);
+      for (long memoryBudget : new long[] {1, 4096, 256L << 20}) {
+        assertSameAsInMemory(file, memoryBudget, 10000);
+      }
+    }
+  }
+
+  @Test
+  void smallBudgetsTakeMorePasses() throws IOException {
+    String file = directory.resolve("passes.txt").toString();
+    new DataSetGenerator().setRows(20000).setAttributes(10).setDepth(5).setNoise(0.1).setSeed(9)
+        .write(file);
+    OutOfCoreTrainer trainer = new OutOfCoreTrainer().setSpillDirectory(directory.toString());
+    trainer.train(file);
+    int passes = trainer.getPasses();
+    trainer.setMemoryBudget(4096).train(file);
+    assertTrue(trainer.getPasses() > passes, trainer.getPasses() + " passes");
+  }
+}
@@ -0,0 +1,52 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.io.IOException;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Reduced-error pruning against the pruning of ReferenceTree.
+ */
+class PruneTest {
+  private static void assertSameAsReference(DataSet train, DataSet tune, String message) {
+    DecisionTreeImpl tree = new DecisionTreeImpl(train, tune);
+    assertEquals(ReferenceTree.grow(train, tune).print(), TestData.printed(tree), message);
+    CompiledTreeTest.assertSameAsWalk(tree, tune);
+  }
+
+  @Test
+  void bundledFiles() throws IOException {
+    DataSetLoader loader = new DataSetLoader();
+    assertSameAsReference(loader.load("prune_train.txt"), loader.load("prune_tune.txt"), "prune");
+    assertSameAsReference(loader.load("examples1.txt"), loader.load("examples3.txt"), "examples");
+  }
+
+  @Test
+  void generatedData() {
+    for (int seed = 0; seed < 30; seed++) {
+      DataSetGenerator generator = new DataSetGenerator().setRows(100 + 30 * seed)
+          .setAttributes(3 + seed % 6).setArity(2, 2 + seed % 3).setLabels(2 + seed % 3)
+          .setDepth(2 + seed % 3).setNoise(0.1 + seed % 4 * 0.05).setSeed(seed);
+      DataSet train = generator.generate();
+      DataSet tune = generator.setRows(40 + 10 * seed).setSeed(1000 + seed).generate();
+      assertSameAsReference(train, tune, "seed " + seed);
+    }
+  }
+
+  @Test
+  void pruningAfterGrowingPrunesTheSame() throws IOException {
+    DataSetLoader loader = new DataSetLoader();
+    DataSet train = loader.load("prune_train.txt");
+    DataSet tune = loader.load("prune_tune.txt");
+    DecisionTreeImpl tree = new DecisionTreeImpl(train);
+    tree.prune(tune);
+    assertEquals(TestData.printed(new DecisionTreeImpl(train, tune)), TestData.printed(tree));
+    CompiledTreeTest.assertSameAsWalk(tree, loader.load("prune_test.txt"));
+  }
+
+  @Test
+  void emptyTuningSetPrunesNothing() throws IOException {
+    DataSet train = new DataSetLoader().load("prune_train.txt");
+    assertEquals(TestData.printed(new DecisionTreeImpl(train)),
+        TestData.printed(new DecisionTreeImpl(train, train.emptyCopy())));
+  }
+}
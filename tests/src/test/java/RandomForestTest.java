@@ -0,0 +1,63 @@
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.Arrays;
+import java.util.SplittableRandom;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Forests against their own trees, and trees grown on row samples against trees grown on copies
+ * of the sampled rows.
+ */
+class RandomForestTest {
+  @Test
+  void sampledRowsGrowTheTreeOfTheirCopy() {
+    DataSet set = TestData.synthetic(2000, 8, 6);
+    SplittableRandom random = new SplittableRandom(6);
+    for (int sample = 0; sample < 5; sample++) {
+      int[] rows = new int[set.size()];
+      DataSet copy = set.emptyCopy();
+      int[] codes = new int[set.attributes.size() + 1];
+      for (int i = 0; i < rows.length; i++) {
+        rows[i] = random.nextInt(rows.length);
+        for (int attribute = 0; attribute < codes.length; attribute++) {
+          codes[attribute] = set.getAttributeCode(rows[i], attribute);
+        }
+        copy.addCodes(codes);
+      }
+      assertEquals(ReferenceTree.grow(copy, null).print(),
+          TestData.printed(new DecisionTreeImpl(set, rows, new TreeOptions())), "sample " + sample);
+    }
+  }
+
+  @Test
+  void parallelismDoesNotChangeTheForest() {
+    DataSet set = TestData.synthetic(3000, 12, 8);
+    TreeOptions options = new TreeOptions().setAttributesPerNode(3).setSeed(8);
+    String sequential = TestData.printed(new RandomForest(set, 12, options.copy()));
+    assertEquals(sequential,
+        TestData.printed(new RandomForest(set, 12, options.copy().setParallelism(4))));
+  }
+
+  @Test
+  void forestVotesItsTrees() {
+    DataSet train = TestData.synthetic(3000, 12, 9);
+    RandomForest forest = new RandomForest(train, 9,
+        new TreeOptions().setAttributesPerNode(4).setSeed(9).setParallelism(2));
+    // enough rows for classifyAll to split them over the pool
+    DataSet test = TestData.synthetic(40000, 12, 10);
+    int[] classifications = new int[test.size()];
+    int[] votes = new int[train.labels.size()];
+    for (int row = 0; row < test.size(); row++) {
+      Instance instance = test.getInstance(row);
+      Arrays.fill(votes, 0);
+      for (int tree = 0; tree < forest.size(); tree++) {
+        votes[forest.getTree(tree).classifyCode(instance)]++;
+      }
+      classifications[row] = forest.classifyCode(instance);
+      assertEquals(DecisionTreeImpl.getMostCommonLabel(votes,
+          DecisionTreeImpl.labelTieOrder(train.labels)), classifications[row], "row " + row);
+    }
+    assertArrayEquals(classifications, forest.classifyAll(test));
+  }
+}
@@ -0,0 +1,241 @@
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The original list-of-instances ID3 tree, kept as the reference the tree classes are tested
+ * against. It compares attribute values as Strings, rescans the examples for every count and sums
+ * entropies from ratio terms, exactly as DecisionTreeImpl did before it was rewritten. Two changes
+ * since are made here too: the class entropy skips absent labels instead of turning them into NaN
+ * gains, and rootInfoGain prints gains of at least 0. Discrete attributes only.
+ */
+final class ReferenceTree {
+  private final List<String> labels;
+  private final List<String> attributes;
+  private final Map<String, List<String>> attributeValues;
+  private DecTreeNode root;
+
+  /**
+   * Answers rootInfoGain for the meta-values of the given DataSet.
+   */
+  ReferenceTree(DataSet meta) {
+    this.labels = meta.labels;
+    this.attributes = meta.attributes;
+    this.attributeValues = meta.attributeValues;
+  }
+
+  /**
+   * The tree grown on the training set, pruned with the tuning set unless it is null.
+   */
+  static ReferenceTree grow(DataSet train, DataSet tune) {
+    ReferenceTree tree = new ReferenceTree(train);
+    List<Instance> examples = instances(train);
+    tree.root = tree.build(examples, train.attributes, examples, null);
+    if (tune != null) {
+      tree.prune(tree.root, instances(tune));
+    }
+    return tree;
+  }
+
+  private static List<Instance> instances(DataSet set) {
+    List<Instance> instances = new ArrayList<Instance>(set.size());
+    for (int row = 0; row < set.size(); row++) {
+      instances.add(set.getInstance(row));
+    }
+    return instances;
+  }
+
+  String classify(Instance instance) {
+    DecTreeNode node = root;
+    while (!node.terminal) {
+      String value = instance.getAttribute(attributes.indexOf(node.attribute));
+      for (DecTreeNode child : node.children) {
+        if (value.equals(child.parentAttributeValue)) {
+          node = child;
+          break;
+        }
+      }
+    }
+    return node.label;
+  }
+
+  /**
+   * The lines print() writes.
+   */
+  String print() {
+    StringBuilder sb = new StringBuilder();
+    print(root, "ROOT", 0, sb);
+    return sb.toString();
+  }
+
+  private void print(DecTreeNode node, String value, int depth, StringBuilder sb) {
+    for (int i = 0; i < depth; i++) {
+      sb.append("    ");
+    }
+    sb.append(value);
+    if (node.terminal) {
+      sb.append(" (").append(node.label).append(")\n");
+      return;
+    }
+    sb.append(" {").append(node.attribute).append("?}\n");
+    for (DecTreeNode child : node.children) {
+      print(child, child.parentAttributeValue, depth + 1, sb);
+    }
+  }
+
+  /**
+   * The lines rootInfoGain writes for the training set.
+   */
+  String rootInfoGain(DataSet train) {
+    StringBuilder sb = new StringBuilder();
+    for (String attribute : attributes) {
+      double gain = Math.max(0.0, infoGain(attribute, instances(train)));
+      sb.append(String.format("%s %.5f\n", attribute, gain));
+    }
+    return sb.toString();
+  }
+
+  private DecTreeNode build(List<Instance> examples, List<String> candidates,
+      List<Instance> parentExamples, String parentValue) {
+    if (examples.isEmpty()) {
+      return new DecTreeNode(mostCommonLabel(parentExamples), null, parentValue, true);
+    } else if (sameLabel(examples)) {
+      return new DecTreeNode(examples.get(0).getLabel(), null, parentValue, true);
+    } else if (candidates.isEmpty()) {
+      return new DecTreeNode(mostCommonLabel(examples), null, parentValue, true);
+    }
+    String best = bestAttribute(examples, candidates);
+    int index = attributes.indexOf(best);
+    DecTreeNode node = new DecTreeNode(mostCommonLabel(examples), best, parentValue, false);
+    List<String> rest = new ArrayList<String>(candidates);
+    rest.remove(best);
+    for (String value : attributeValues.get(best)) {
+      List<Instance> branch = new ArrayList<Instance>();
+      for (Instance instance : examples) {
+        if (instance.getAttribute(index).equals(value)) {
+          branch.add(instance);
+        }
+      }
+      node.addChild(build(branch, rest, examples, value));
+    }
+    return node;
+  }
+
+  private String bestAttribute(List<Instance> examples, List<String> candidates) {
+    double maxGain = 0;
+    String best = candidates.get(0);
+    for (String attribute : candidates) {
+      double gain = infoGain(attribute, examples);
+      if (gain > maxGain) {
+        maxGain = gain;
+        best = attribute;
+      }
+    }
+    if (maxGain == 0) {
+      List<String> sorted = new ArrayList<String>(candidates);
+      sorted.sort(String::compareTo);
+      return sorted.get(0);
+    }
+    return best;
+  }
+
+  private double infoGain(String attribute, List<Instance> examples) {
+    int index = attributes.indexOf(attribute);
+    double attributeEntropy = 0;
+    for (String value : attributeValues.get(attribute)) {
+      int[] counts = new int[labels.size()];
+      for (Instance instance : examples) {
+        if (instance.getAttribute(index).equals(value)) {
+          counts[labels.indexOf(instance.getLabel())]++;
+        }
+      }
+      attributeEntropy += entropy(counts, examples.size());
+    }
+    int[] counts = new int[labels.size()];
+    for (Instance instance : examples) {
+      counts[labels.indexOf(instance.getLabel())]++;
+    }
+    double classEntropy = 0;
+    for (int count : counts) {
+      if (count == 0) {
+        continue;
+      }
+      double ratio = (double) count / examples.size();
+      classEntropy += ratio * Math.log(ratio) / Math.log(2);
+    }
+    return classEntropy * -1 - attributeEntropy;
+  }
+
+  private static double entropy(int[] counts, int totalRows) {
+    int valueRows = 0;
+    for (int count : counts) {
+      valueRows += count;
+    }
+    if (valueRows == 0) {
+      return 0;
+    }
+    double totalEntropy = 0;
+    for (int count : counts) {
+      if (count == 0) {
+        continue;
+      }
+      double ratio = (double) count / valueRows;
+      totalEntropy += ratio * Math.log(ratio) / Math.log(2);
+    }
+    return (double) valueRows / totalRows * totalEntropy * -1;
+  }
+
+  private static boolean sameLabel(List<Instance> examples) {
+    String label = examples.get(0).getLabel();
+    for (Instance instance : examples) {
+      if (!instance.getLabel().equals(label)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private static String mostCommonLabel(List<Instance> examples) {
+    Map<String, Integer> counts = new HashMap<String, Integer>();
+    for (Instance instance : examples) {
+      counts.merge(instance.getLabel(), 1, Integer::sum);
+    }
+    String mostCommon = "";
+    int maxCount = 0;
+    for (String label : counts.keySet()) {
+      if (counts.get(label) > maxCount) {
+        maxCount = counts.get(label);
+        mostCommon = label;
+      }
+    }
+    return mostCommon;
+  }
+
+  /**
+   * Tests each node after each of its children is pruned, and makes it a leaf when that classifies
+   * the whole tuning set at least as well.
+   */
+  private void prune(DecTreeNode node, List<Instance> tune) {
+    if (node.terminal) {
+      return;
+    }
+    for (DecTreeNode child : node.children) {
+      prune(child, tune);
+      double accuracy = accuracy(tune);
+      node.terminal = true;
+      double prunedAccuracy = accuracy(tune);
+      node.terminal = prunedAccuracy >= accuracy;
+    }
+  }
+
+  private double accuracy(List<Instance> examples) {
+    int correct = 0;
+    for (Instance instance : examples) {
+      if (classify(instance).equals(instance.getLabel())) {
+        correct++;
+      }
+    }
+    return (double) correct / examples.size();
+  }
+}
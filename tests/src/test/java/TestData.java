@@ -0,0 +1,155 @@
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Helpers shared by the tests: data sets written inline and the text the trees print.
+ */
+final class TestData {
+  private TestData() {
+  }
+
+  /**
+   * DataSet of the given lines in the data file format, read line by line through the String
+   * methods of DataSet as HW3.createDataSet read a file before DataSetLoader.
+   */
+  static DataSet parse(String... lines) {
+    DataSet set = new DataSet();
+    for (String line : lines) {
+      if (line.startsWith("//")) {
+        continue;
+      } else if (line.startsWith("%%")) {
+        set.addLabels(line);
+      } else if (line.startsWith("##")) {
+        set.addAttribute(line);
+      } else {
+        set.addInstance(line);
+      }
+    }
+    return set;
+  }
+
+  /**
+   * Data set of two numeric and two discrete attributes, labelled by thresholds on the numeric
+   * ones with 10% label noise.
+   */
+  static DataSet numeric(int rows, long seed) {
+    Random random = new Random(seed);
+    List<String> lines = new ArrayList<String>();
+    lines.add("%%,yes,no,maybe");
+    lines.add("##,x1,numeric");
+    lines.add("##,color,red,green,blue");
+    lines.add("##,x2,numeric");
+    lines.add("##,flag,t,f");
+    String[] colors = {"red", "green", "blue"};
+    String[] labels = {"yes", "no", "maybe"};
+    for (int row = 0; row < rows; row++) {
+      float x1 = Math.round(random.nextFloat() * 1000 - 500) / 10f;
+      String color = colors[random.nextInt(3)];
+      int x2 = random.nextInt(20);
+      String flag = random.nextBoolean() ? "t" : "f";
+      String label;
+      if (random.nextInt(10) == 0) {
+        label = labels[random.nextInt(3)];
+      } else if (x1 <= 3.5f && !color.equals("blue")) {
+        label = "yes";
+      } else if (x2 > 12) {
+        label = "no";
+      } else {
+        label = flag.equals("t") ? "maybe" : "no";
+      }
+      lines.add(x1 + "," + color + "," + x2 + "," + flag + "," + label);
+    }
+    return parse(lines.toArray(new String[0]));
+  }
+
+  /**
+   * Small data set of random values and labels, 2 to 4 labels over 3 to 8 attributes of 2 or 3
+   * values. Equal gains are common on so few rows, which is where scoring code tends to differ.
+   */
+  static DataSet random(long seed) {
+    Random random = new Random(seed);
+    int labels = 2 + random.nextInt(3);
+    int[] arity = new int[3 + random.nextInt(6)];
+    List<String> lines = new ArrayList<String>();
+    StringBuilder line = new StringBuilder("%%");
+    for (int label = 0; label < labels; label++) {
+      line.append(",L").append(label);
+    }
+    lines.add(line.toString());
+    for (int attribute = 0; attribute < arity.length; attribute++) {
+      arity[attribute] = 2 + random.nextInt(2);
+      line = new StringBuilder("##,A").append((char) ('a' + random.nextInt(26))).append(attribute);
+      for (int value = 0; value < arity[attribute]; value++) {
+        line.append(',').append(value);
+      }
+      lines.add(line.toString());
+    }
+    for (int row = 6 + random.nextInt(60); row > 0; row--) {
+      line = new StringBuilder();
+      for (int attribute = 0; attribute < arity.length; attribute++) {
+        line.append(random.nextInt(arity[attribute])).append(',');
+      }
+      lines.add(line.append('L').append(random.nextInt(labels)).toString());
+    }
+    return parse(lines.toArray(new String[0]));
+  }
+
+  /**
+   * Data set drawn by DataSetGenerator, labelled by a planted tree of depth 4.
+   */
+  static DataSet synthetic(int rows, int attributes, long seed) {
+    return new DataSetGenerator().setRows(rows).setAttributes(attributes).setArity(2, 6)
+        .setDepth(4).setSeed(seed).generate();
+  }
+
+  /**
+   * The rows of set from row from up to row to, sharing its meta-data. Discrete attributes only.
+   */
+  static DataSet slice(DataSet set, int from, int to) {
+    DataSet slice = set.emptyCopy();
+    int[] codes = new int[set.attributes.size() + 1];
+    for (int row = from; row < to; row++) {
+      for (int i = 0; i < codes.length; i++) {
+        codes[i] = set.getAttributeCode(row, i);
+      }
+      slice.addCodes(codes);
+    }
+    return slice;
+  }
+
+  /**
+   * What the action writes to System.out.
+   */
+  static String printed(Runnable action) {
+    PrintStream out = System.out;
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    System.setOut(new PrintStream(bytes, true, StandardCharsets.UTF_8));
+    try {
+      action.run();
+    } finally {
+      System.setOut(out);
+    }
+    return bytes.toString(StandardCharsets.UTF_8);
+  }
+
+  /**
+   * The tree as print() writes it.
+   */
+  static String printed(DecisionTree tree) {
+    return printed(tree::print);
+  }
+
+  /**
+   * Weight 1 on every row, so that the tree is grown by the weighted code.
+   */
+  static DataSet unitWeights(DataSet set) {
+    for (int row = 0; row < set.size(); row++) {
+      set.setWeight(row, 1);
+    }
+    return set;
+  }
+}